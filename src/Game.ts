@@ -229,7 +229,7 @@ export class Game {
     const level: Level = new Level(code, this.keys, this.svg, this.svgSupport, Levels.getData(code));
     level.render();
     const stepper = (timestamp: number) => {
-      if (level.step(timestamp)) {
+      if (level.advance(timestamp)) {
         window.requestAnimationFrame(stepper);
       } else {
         if (level.isSolved()) {
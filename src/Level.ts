@@ -46,7 +46,13 @@ export class Level {
     Level.tileFactories.set("s", (l) => new Sensor(l).init() );
   }
 
+  /** the number of steps simulated per second, whatever the refresh rate of the display */
+  public static readonly STEPS_PER_SECOND = 60;
+
   private static readonly tileFactories: Map<string, TileFactory> = new Map();
+  private static readonly STEP_MILLIS = 1000 / Level.STEPS_PER_SECOND;
+  // the most time caught up at once, e.g. when the browser tab was hidden
+  private static readonly MAX_CATCH_UP = 250;
 
   private readonly code: string;
   private readonly keys: Map<string, boolean>;
@@ -54,11 +60,17 @@ export class Level {
   private readonly svgSupport: SVGSupport;
   private readonly tiles: Tile[][];
   private readonly activeTiles: Tile[];
+  private readonly activeIndex: Map<Tile, number>;
   private readonly sensors: Sensor[];
   private readonly player: Player;
 
   private time: number;
+  private accumulated: number;
   private frame: number;
+  private stepping: boolean;
+  private holes: number;
+  private bombs: number;
+  private openSensors: number;
   private success: boolean;
   private aborted: boolean;
   private clearBombs: boolean;
@@ -81,9 +93,15 @@ export class Level {
     this.svgSupport = svgSupport;
     this.tiles = [];
     this.activeTiles = [];
+    this.activeIndex = new Map();
     this.sensors = [];
+    this.stepping = false;
+    this.holes = 0;
+    this.bombs = 0;
+    this.openSensors = 0;
     this.clearBombs = false;
     this.player = this.build(data);
+    this.accumulated = 0;
     this.frame = -1;
     this.success = false;
     this.aborted = false;
@@ -177,77 +195,91 @@ export class Level {
   }
 
   /**
-   * Animates one frame
-   * @param timestamp the current time stamp (optional)
+   * Advances the level to the time of an animation frame. The level is
+   * simulated in fixed steps, as many as have passed since the last frame,
+   * and the player is drawn between its last two positions.
+   * @param timestamp the time stamp of the animation frame
+   * @returns false once the level is over
    */
-  public step(timestamp?: number): boolean {
-    this.frame++;
-    if (!this.time) {
+  public advance(timestamp: number): boolean {
+    if (this.time === undefined) {
       this.time = timestamp;
     }
-    const delta = Math.min((timestamp - this.time), 250);
-    // one step no shorter than 40ms
-    if (delta >= 40) {
-      if (this.showVeil) {
-        if (!this.showVeil.step()) {
-          this.svgSupport.clear(this.svg, SVGSupport.LAYER_VEIL);
-          this.showVeil = undefined;
-        }
-      } else if (this.hideVeil) {
-        if (!this.hideVeil.step()) {
-          this.svgSupport.clear(this.svg, SVGSupport.LAYER_VEIL);
-          return false;
-        }
+    this.accumulated += Math.min(timestamp - this.time, Level.MAX_CATCH_UP);
+    this.time = timestamp;
+    while (this.accumulated >= Level.STEP_MILLIS) {
+      this.accumulated -= Level.STEP_MILLIS;
+      if (!this.step()) {
+        return false;
       }
-      const playerLocation = this.player.getTileLocation();
-      if (this.isOutOfBounds(playerLocation)) {
-        this.exit(false);
-      } else {
-        if (this.player.isMoving()) {
-          const next = this.player.getTileLocation(true);
-          if (!this.isOutOfBounds(next)) {
-            if (this.tiles[next.y][next.x]) {
-              this.tiles[next.y][next.x].contact();
-            }
-          }
-        } else {
-          const position = this.player.getTileLocation();
-          if (this.tiles[position.y][position.x] && !this.tiles[position.y][position.x].occupiable()) {
-            this.exit(false);
-            return true;
+    }
+    this.player.interpolate(this.accumulated / Level.STEP_MILLIS);
+    return true;
+  }
+
+  /**
+   * Simulates one step of the level, see STEPS_PER_SECOND.
+   * This does not depend on the time and can run without animation frames.
+   * @returns false once the level is over
+   */
+  public step(): boolean {
+    this.frame++;
+    if (this.showVeil) {
+      if (!this.showVeil.step()) {
+        this.svgSupport.clear(this.svg, SVGSupport.LAYER_VEIL);
+        this.showVeil = undefined;
+      }
+    } else if (this.hideVeil) {
+      if (!this.hideVeil.step()) {
+        this.svgSupport.clear(this.svg, SVGSupport.LAYER_VEIL);
+        return false;
+      }
+    }
+    const playerLocation = this.player.getTileLocation();
+    if (this.isOutOfBounds(playerLocation)) {
+      this.exit(false);
+    } else {
+      if (this.player.isMoving()) {
+        const next = this.player.getTileLocation(true);
+        if (!this.isOutOfBounds(next)) {
+          if (this.tiles[next.y][next.x]) {
+            this.tiles[next.y][next.x].contact();
           }
         }
-        if (!this.success) {
-          this.player.handleKeys();
-          this.player.step();
+      } else {
+        const position = this.player.getTileLocation();
+        if (this.tiles[position.y][position.x] && !this.tiles[position.y][position.x].occupiable()) {
+          this.exit(false);
+          return true;
         }
       }
-      let bombs = 0;
-      let sensors = 0;
-      for (let i = this.activeTiles.length; --i >= 0; ) {
-        const tile = this.activeTiles[i];
-        if (tile.step() === false) {
-          const elem = tile.getElement();
-          if (elem.parentNode) {
-            elem.parentNode.removeChild(elem);
-          }
-          this.activeTiles.splice(i, 1);
-          const location = tile.getTileLocation();
-          this.tiles[location.y][location.x] = undefined;
-        } else {
-          if (tile instanceof Bomb) {
-            bombs++;
-          } else if (tile instanceof Sensor) {
-            sensors += (tile as Sensor).activated() ? 0 : 1;
-          }
-        }
+      if (!this.success) {
+        this.player.handleKeys();
+        this.player.step();
       }
-      if (this.skull) {
-        if (sensors > 0 || (this.clearBombs && bombs > 0)) {
-          this.skull.setAttribute("opacity", (0.5 + Math.sin(this.frame * Math.PI / 45) / 2).toString(10));
-        } else {
-          this.skull.setAttribute("opacity", "0");
+    }
+    // tiles added while stepping are stepped from the next step on,
+    // tiles removed before their turn are not stepped any more
+    this.stepping = true;
+    for (let i = this.activeTiles.length; --i >= 0; ) {
+      const tile = this.activeTiles[i];
+      if (tile && tile.step() === false) {
+        const elem = tile.getElement();
+        if (elem.parentNode) {
+          elem.parentNode.removeChild(elem);
         }
+        this.removeActive(tile);
+        const location = tile.getTileLocation();
+        this.tiles[location.y][location.x] = undefined;
+      }
+    }
+    this.stepping = false;
+    this.compact();
+    if (this.skull) {
+      if (this.openSensors > 0 || (this.clearBombs && this.bombs > 0)) {
+        this.skull.setAttribute("opacity", (0.5 + Math.sin(this.frame * Math.PI / 45) / 2).toString(10));
+      } else {
+        this.skull.setAttribute("opacity", "0");
       }
     }
     return true;
@@ -309,10 +341,7 @@ export class Level {
       }
       return;
     }
-    const idx = this.activeTiles.indexOf(old);
-    if (idx >= 0) {
-      this.activeTiles.splice(idx, 1);
-    }
+    this.removeActive(old);
   }
 
   /**
@@ -346,14 +375,12 @@ export class Level {
     }
     this.tiles[y][x] = tile;
     tile.place(x, y);
-    this.activeTiles.push(tile);
-    const idx = this.activeTiles.indexOf(old);
-    if (idx >= 0) {
+    this.addActive(tile);
+    if (this.removeActive(old)) {
       const elem = old.getElement();
       if (removeFromSVG && elem.parentNode) {
         elem.parentNode.removeChild(elem);
       }
-      this.activeTiles.splice(idx, 1);
     }
   }
 
@@ -365,18 +392,17 @@ export class Level {
   }
 
   /**
-   * Returns the number of active bombs in the level.
+   * Returns the number of bombs left in the level.
    */
   public bombCount(): number {
-    let count = 0;
-    for (const row of this.tiles) {
-      for (const tile of row) {
-        if (tile instanceof Bomb) {
-          count++;
-        }
-      }
-    }
-    return count;
+    return this.bombs;
+  }
+
+  /**
+   * Notifies the level that all sides of a sensor have been activated.
+   */
+  public sensorActivated(): void {
+    this.openSensors--;
   }
 
   /**
@@ -390,14 +416,69 @@ export class Level {
   }
 
   private checkSensors(): boolean {
-    for (const sensor of this.sensors) {
-      if (!sensor.activated()) {
-        return false;
-      }
+    return this.openSensors === 0;
+  }
+
+  /**
+   * Adds a tile to the active tiles, which are stepped every frame.
+   * @param tile the tile to add
+   */
+  private addActive(tile: Tile): void {
+    this.activeIndex.set(tile, this.activeTiles.length);
+    this.activeTiles.push(tile);
+    if (tile instanceof Bomb) {
+      this.bombs++;
+    }
+  }
+
+  /**
+   * Removes a tile from the active tiles; the last active tile takes its place.
+   * While stepping, the place is left empty until the step is done.
+   * @param tile the tile to remove, optional
+   * @returns true if the tile was active
+   */
+  private removeActive(tile: Tile): boolean {
+    const idx = this.activeIndex.get(tile);
+    if (idx === undefined) {
+      return false;
+    }
+    this.activeIndex.delete(tile);
+    if (tile instanceof Bomb) {
+      this.bombs--;
+    }
+    if (this.stepping) {
+      this.activeTiles[idx] = undefined;
+      this.holes++;
+    } else {
+      this.fill(idx);
     }
     return true;
   }
 
+  /**
+   * Fills the places of the active tiles left empty while stepping.
+   */
+  private compact(): void {
+    for (let i = this.activeTiles.length; this.holes > 0 && --i >= 0; ) {
+      if (this.activeTiles[i] === undefined) {
+        this.fill(i);
+        this.holes--;
+      }
+    }
+  }
+
+  /**
+   * Moves the last active tile to the given place.
+   * @param idx the place to fill
+   */
+  private fill(idx: number): void {
+    const last = this.activeTiles.pop();
+    if (idx < this.activeTiles.length) {
+      this.activeTiles[idx] = last;
+      this.activeIndex.set(last, idx);
+    }
+  }
+
   private build(data: string[]): Player {
     let result;
     let wormhole;
@@ -413,7 +494,7 @@ export class Level {
             elements.push(undefined);
           } else {
             elements.push(element);
-            this.activeTiles.push(element);
+            this.addActive(element);
             if (element instanceof Portal) {
               this.clearBombs = (element as Portal).clearAllBombs();
               this.skull = (element as Portal).getSkull();
@@ -427,6 +508,7 @@ export class Level {
               }
             } else if (element instanceof Sensor) {
               this.sensors.push(element as Sensor);
+              this.openSensors++;
             }
           }
         } else {
@@ -45,8 +45,13 @@ export class Levels {
    * The levels are compressed into a PNG to conserve space, and parsed into
    * raw string arrays here.
    * This method must be called before the game can run.
+   * The decoded levels are cached in the local storage, later
+   * page loads of the same levels skip decoding the PNG.
    */
   public static decode(): Promise<void> {
+    if (Levels.restore()) {
+      return Promise.resolve();
+    }
     return new Promise<void>((resolve) => {
       const img = document.createElement("img");
       img.src = Levels.ENCODED;
@@ -73,11 +78,66 @@ export class Levels {
           }
           Levels.DATA.data.push(level);
         }
+        Levels.store();
         resolve();
       };
     });
   }
 
+  // the prefix of the local storage keys of the cached levels
+  private static readonly CACHE_PREFIX = "boxitus.levels.";
+
+  /**
+   * Restores the levels cached for the current encoded levels.
+   * @returns true if the levels were restored, false if they must be decoded
+   */
+  private static restore(): boolean {
+    try {
+      const cached = JSON.parse(window.localStorage.getItem(Levels.cacheKey()));
+      if (cached && Array.isArray(cached.index) && Array.isArray(cached.data) &&
+        cached.index.length > 0 && cached.index.length === cached.data.length) {
+        Levels.DATA.index.push(...cached.index);
+        Levels.DATA.data.push(...cached.data);
+        return true;
+      }
+    } catch (e) {
+      // no local storage (e.g. disabled by the user) or garbled content, decode
+    }
+    return false;
+  }
+
+  /**
+   * Caches the decoded levels, replacing levels cached for other encoded levels.
+   */
+  private static store(): void {
+    try {
+      const storage = window.localStorage;
+      for (let i = storage.length; --i >= 0; ) {
+        const key = storage.key(i);
+        if (key && key.indexOf(Levels.CACHE_PREFIX) === 0) {
+          storage.removeItem(key);
+        }
+      }
+      storage.setItem(Levels.cacheKey(), JSON.stringify(Levels.DATA));
+    } catch (e) {
+      // silently ignore, the levels are decoded again next time
+    }
+  }
+
+  /**
+   * Returns the local storage key of the current encoded levels.
+   */
+  private static cacheKey(): string {
+    // 32 bit FNV-1a over the encoded levels
+    let hash = 0x811c9dc5;
+    for (let i = 0; i < Levels.ENCODED.length; i++) {
+      // tslint:disable-next-line:no-bitwise
+      hash = Math.imul(hash ^ Levels.ENCODED.charCodeAt(i), 0x01000193);
+    }
+    // tslint:disable-next-line:no-bitwise
+    return Levels.CACHE_PREFIX + (hash >>> 0).toString(16);
+  }
+
   private static readonly DATA = { index: [], data: [] };
 
   // the levels, compressed in a PNG - created using the Java editor
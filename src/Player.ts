@@ -26,6 +26,7 @@ export class Player extends Tile {
   private static readonly FLASH: number = 40;
 
   private readonly position: Vector;
+  private readonly previous: Vector;
   private readonly delta: Vector;
   private direction: Direction;
   private body: SVGElement;
@@ -39,6 +40,7 @@ export class Player extends Tile {
     super(level);
     this.delta = { x: 0, y: 0 };
     this.position = { x: 0, y: 0 };
+    this.previous = { x: 0, y: 0 };
   }
 
   /**
@@ -91,6 +93,9 @@ export class Player extends Tile {
     super.place(x, y);
     this.position.x = 32 * x;
     this.position.y = 32 * y;
+    // jumps are not interpolated
+    this.previous.x = this.position.x;
+    this.previous.y = this.position.y;
   }
 
   /**
@@ -157,14 +162,15 @@ export class Player extends Tile {
   }
 
   /**
-   * Moves the player for one animation frame.
+   * Moves the player for one step; the player is drawn by interpolate().
    */
   public step(): boolean {
     super.step();
+    this.previous.x = this.position.x;
+    this.previous.y = this.position.y;
     if (this.isMoving()) {
       this.position.x += Player.SPEED * this.delta.x;
       this.position.y += Player.SPEED * this.delta.y;
-      super.placeSVG(this.position.x, this.position.y);
     }
     const activity = this.target - this.frame;
     if (activity >= 0)  {
@@ -174,6 +180,16 @@ export class Player extends Tile {
     return true;
   }
 
+  /**
+   * Draws the player between its positions before and after the last step.
+   * @param alpha the share of the next step which has passed, from 0 to 1
+   */
+  public interpolate(alpha: number): void {
+    super.placeSVG(
+      this.previous.x + alpha * (this.position.x - this.previous.x),
+      this.previous.y + alpha * (this.position.y - this.previous.y));
+  }
+
   /**
    * Stops the player at the given coordinates.
    * @param tx the x coordinate of the tile position to stop the player at
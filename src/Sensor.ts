@@ -105,6 +105,9 @@ export class Sensor extends Tile {
     if (side) {
       this.sides.delete(direction);
       side.setAttribute("style", "fill:rgb(248,204,0);stroke-width:3;stroke:rgb(224,192,0)");
+      if (this.activated()) {
+        this.level.sensorActivated();
+      }
       return true;
     }
     return false;
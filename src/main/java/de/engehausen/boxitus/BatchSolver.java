@@ -0,0 +1,137 @@
+package de.engehausen.boxitus;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.engehausen.boxitus.Solver.Engine;
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * Command line solver for level catalogs. It does not need a display and
+ * writes its results in the format of {@code src/test/resources/solutions.json}.
+ * Each level gets its own budget, the best solution found within it is written.
+ */
+public class BatchSolver {
+
+	private final Levels levels;
+	private final Engine engine;
+	private final int threads;
+	private final long timeBudget;
+	private final long memoryBudget;
+	private final long stepBudget;
+
+	/**
+	 * Creates the batch solver.
+	 * @param catalog the levels to solve, must not be {@code null}
+	 * @param anEngine the solver engine to use, must not be {@code null}
+	 * @param threadCount the number of levels to solve in parallel
+	 * @param timeLimit the time budget per level in milliseconds, zero or less for no limit
+	 * @param memoryLimit the heap size in bytes above which solving is aborted, zero or less for no limit
+	 * @param stepLimit the maximum number of search steps per level, zero or less for no limit
+	 */
+	public BatchSolver(final Levels catalog, final Engine anEngine, final int threadCount, final long timeLimit, final long memoryLimit, final long stepLimit) {
+		levels = catalog;
+		engine = anEngine;
+		threads = Math.max(1, threadCount);
+		timeBudget = timeLimit;
+		memoryBudget = memoryLimit;
+		stepBudget = stepLimit;
+	}
+
+	/**
+	 * Solves the levels with the given codes.
+	 * @param codes the codes of the levels to solve, must not be {@code null}
+	 * @return the results by level code, in order of the codes
+	 * @throws InterruptedException if interrupted while waiting for the results
+	 */
+	public Map<String, SolveResult> solve(final Collection<String> codes) throws InterruptedException {
+		final Map<String, Future<SolveResult>> futures = new TreeMap<>();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (String code : codes) {
+				// level creation is not thread-safe, do it here
+				final Level level = levels.require(code);
+				futures.put(code, executor.submit(() -> solve(level)));
+			}
+			final Map<String, SolveResult> result = new TreeMap<>();
+			for (Map.Entry<String, Future<SolveResult>> entry : futures.entrySet()) {
+				try {
+					result.put(entry.getKey(), entry.getValue().get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(entry.getKey(), e.getCause());
+				}
+			}
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Solves a single level within the budgets.
+	 * @param level the level to solve, must not be {@code null}
+	 * @return the result, never {@code null}
+	 */
+	protected SolveResult solve(final Level level) {
+		return new Solver(level, engine).solve(new SolveBudget(timeBudget, stepBudget, memoryBudget));
+	}
+
+	public static void main(final String... args) throws IOException, InterruptedException {
+		final CommandLine commandLine = new CommandLine(BatchSolver.class, true)
+			.option("--levels", "<file>", "the level catalog (default: the built-in levels.json)")
+			.option("--engine", "<name>", "the solver engine, one of " + Arrays.toString(Engine.values()))
+			.option("--threads", "<n>", "the number of levels to solve in parallel (default: number of cores)")
+			.option("--time", "<seconds>", "the time budget per level (default: unlimited)")
+			.option("--memory", "<mb>", "abort solving while the heap in use exceeds this size (default: unlimited)")
+			.option("--steps", "<n>", "the maximum number of search steps per level (default: unlimited)")
+			.option("--out", "<file>", "the file to write the solutions to (default: standard output)")
+			.note("Without codes all levels of the catalog are solved. The exit code is 1 if any level was aborted.");
+		if (!commandLine.parse(args)) {
+			return;
+		}
+		final Engine engine = commandLine.get("--engine", Engine::valueOf, Engine.DEPTH_FIRST);
+		final int threads = commandLine.getInt("--threads", Runtime.getRuntime().availableProcessors());
+		final long time = 1000L * commandLine.getLong("--time", 0);
+		final long memory = 1024L * 1024L * commandLine.getLong("--memory", 0);
+		final long steps = commandLine.getLong("--steps", 0);
+		final File out = commandLine.getFile("--out");
+		final Levels levels = commandLine.load(commandLine.getFile("--levels"));
+		final List<String> codes = commandLine.getCodes();
+		final Map<String, SolveResult> results = new BatchSolver(levels, engine, threads, time, memory, steps)
+			.solve(codes.isEmpty() ? levels.index : codes);
+		boolean ok = true;
+		final Map<String, List<Direction>> solutions = new TreeMap<>();
+		for (Map.Entry<String, SolveResult> entry : results.entrySet()) {
+			final SolveResult result = entry.getValue();
+			final SolutionPath best = result.getBest();
+			solutions.put(entry.getKey(), best == null ? Collections.emptyList() : best.directions());
+			System.err.println(entry.getKey() + ": " + result + (result.getEngine() == engine ? "" : ", switched to " + result.getEngine()));
+			ok &= result.getAbortReason() == null;
+		}
+		if (out == null) {
+			System.out.println(
+				Levels
+					.getObjectMapper()
+					.writerWithDefaultPrettyPrinter()
+					.writeValueAsString(solutions)
+			);
+		} else {
+			Levels
+				.getObjectMapper()
+				.writerWithDefaultPrettyPrinter()
+				.writeValue(out, solutions);
+		}
+		System.exit(ok ? 0 : 1);
+	}
+
+}
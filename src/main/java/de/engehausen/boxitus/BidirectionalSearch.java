@@ -0,0 +1,369 @@
+package de.engehausen.boxitus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import de.engehausen.boxitus.Level.TileType;
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * A bidirectional breadth-first search for the shortest solution of a static level,
+ * i.e. a level without bombs, sensors and traps (see {@link #isStatic(Level)}).
+ * <p>
+ * The level state of a static level never changes, so the search graph is just
+ * the resting cells of the player. The search meets in the middle: the forward
+ * side slides from the player position, the backward side starts at the exit and
+ * finds the predecessors of a cell by tracing the slides ending there backwards,
+ * through deflectors and wormholes. The side with the smaller frontier is
+ * expanded one layer at a time.
+ */
+public class BidirectionalSearch {
+
+	private static final Direction[] DIRECTIONS = Direction.values();
+	private static final int CELLS = Level.CELLS;
+	/** the node of the exit, the player does not rest there */
+	private static final int EXIT = CELLS;
+	private static final int UNSEEN = -1;
+
+	private final Level root;
+	private final StatefulLevel level;
+	private final int[] forward;
+	private final int[] backward;
+	private final int[] forwardFrom;
+	private final int[] backwardTo;
+	private final byte[] forwardDirection;
+	private final byte[] backwardDirection;
+	private SolverMetrics metrics;
+	private int labeled;
+	private int meeting;
+
+	/**
+	 * Creates the search for the given level.
+	 * @param aLevel the level to solve, must be static and have a player and an exit position
+	 */
+	public BidirectionalSearch(final Level aLevel) {
+		root = aLevel;
+		level = new StatefulLevel(aLevel, true);
+		forward = new int[CELLS + 1];
+		backward = new int[CELLS + 1];
+		forwardFrom = new int[CELLS + 1];
+		backwardTo = new int[CELLS + 1];
+		forwardDirection = new byte[CELLS + 1];
+		backwardDirection = new byte[CELLS + 1];
+	}
+
+	/**
+	 * Checks if the given level is static, i.e. its state cannot change
+	 * while playing: it has no bombs, sensors and traps.
+	 * @param level the level to check, must not be {@code null}
+	 * @return {@code true} if only the player position changes in the level
+	 */
+	public static boolean isStatic(final Level level) {
+		for (int cell = 0; cell < CELLS; cell++) {
+			switch (level.at(Level.x(cell), Level.y(cell))) {
+			case Bomb:
+			case Sensor:
+			case TrapLR:
+			case TrapTB:
+				return false;
+			default:
+				break;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the metrics counting the work of the search.
+	 * @param solverMetrics the metrics, may be {@code null}
+	 */
+	public void setMetrics(final SolverMetrics solverMetrics) {
+		metrics = solverMetrics;
+		level.setMetrics(solverMetrics);
+	}
+
+	/**
+	 * Searches the shortest solution.
+	 * @param control a control predicate which can be used to abort the computation,
+	 * must not be {@code null}
+	 * @return the directions of the shortest solution, or {@code null} if there is none
+	 * or the search was aborted
+	 */
+	public List<Direction> search(final Predicate<Void> control) {
+		Arrays.fill(forward, UNSEEN);
+		Arrays.fill(backward, UNSEEN);
+		labeled = 2;
+		meeting = UNSEEN;
+		int[] forwardLayer = { root.playerPosition };
+		int[] backwardLayer = { EXIT };
+		forward[root.playerPosition] = 0;
+		backward[EXIT] = 0;
+		while (forwardLayer.length > 0 && backwardLayer.length > 0) {
+			if (!control.test(null)) {
+				return null;
+			}
+			if (forwardLayer.length <= backwardLayer.length) {
+				forwardLayer = expandForward(forwardLayer);
+			} else {
+				backwardLayer = expandBackward(backwardLayer);
+			}
+			if (metrics != null) {
+				metrics.visited(labeled);
+			}
+			if (meeting != UNSEEN) {
+				return path();
+			}
+		}
+		return null;
+	}
+
+	private int[] expandForward(final int[] layer) {
+		final IntList next = new IntList();
+		for (int cell : layer) {
+			final int depth = forward[cell];
+			if (metrics != null) {
+				metrics.expanded(depth);
+			}
+			for (Direction direction : DIRECTIONS) {
+				final Position position = new Position(cell);
+				if (level.move(position, direction) == null) {
+					continue;
+				}
+				final int target = Solver.isExit(level.at(position.getX(), position.getY())) ? EXIT : position.get();
+				if (forward[target] == UNSEEN) {
+					if (metrics != null) {
+						metrics.successor();
+					}
+					forward[target] = depth + 1;
+					forwardFrom[target] = cell;
+					forwardDirection[target] = (byte) direction.ordinal();
+					labeled++;
+					next.add(target);
+					meet(target);
+				}
+			}
+		}
+		return next.toArray();
+	}
+
+	private int[] expandBackward(final int[] layer) {
+		final IntList next = new IntList();
+		for (int node : layer) {
+			final int depth = backward[node];
+			if (metrics != null) {
+				metrics.expanded(depth);
+			}
+			predecessors(node, (cell, direction) -> {
+				if (backward[cell] == UNSEEN) {
+					if (metrics != null) {
+						metrics.successor();
+					}
+					backward[cell] = depth + 1;
+					backwardTo[cell] = node;
+					backwardDirection[cell] = (byte) direction.ordinal();
+					labeled++;
+					next.add(cell);
+					meet(cell);
+				}
+			});
+		}
+		return next.toArray();
+	}
+
+	private void meet(final int node) {
+		if (forward[node] != UNSEEN && backward[node] != UNSEEN &&
+			(meeting == UNSEEN || forward[node] + backward[node] < forward[meeting] + backward[meeting])) {
+			meeting = node;
+		}
+	}
+
+	private List<Direction> path() {
+		final List<Direction> result = new ArrayList<>(forward[meeting] + backward[meeting]);
+		for (int node = meeting; node != root.playerPosition; node = forwardFrom[node]) {
+			result.add(DIRECTIONS[forwardDirection[node]]);
+		}
+		Collections.reverse(result);
+		for (int node = meeting; node != EXIT; node = backwardTo[node]) {
+			result.add(DIRECTIONS[backwardDirection[node]]);
+		}
+		return result;
+	}
+
+	/**
+	 * Reports the resting cells from which a single move leads to the given node,
+	 * with the direction of that move.
+	 * @param node the resting cell or {@link #EXIT}
+	 * @param consumer the consumer of the predecessors, a cell may be reported more than once
+	 */
+	private void predecessors(final int node, final Predecessors consumer) {
+		if (node == EXIT) {
+			// any exit ends the slide, no matter where from
+			for (int cell = 0; cell < CELLS; cell++) {
+				if (Solver.isExit(at(cell))) {
+					for (Direction vector : DIRECTIONS) {
+						trace(cell, vector, new BitSet(CELLS), consumer);
+					}
+				}
+			}
+			return;
+		}
+		final TileType tile = at(node);
+		for (Direction vector : DIRECTIONS) {
+			// the player rests here if the next cell blocks the way
+			final int blocker = neighbor(node, vector);
+			if (blocker == Level.NONE || !blocks(at(blocker), vector)) {
+				continue;
+			}
+			final BitSet occupied = new BitSet(CELLS);
+			occupied.set(node);
+			if (isWormhole(node)) {
+				// came out of the wormhole, i.e. went into the one leading here
+				trace(entrance(node), vector, occupied, consumer);
+			} else if (TileType.Empty.equals(tile) || TileType.Wormhole.equals(tile)) {
+				trace(node, vector, occupied, consumer);
+			} else {
+				final Direction incoming = undeflect(tile, vector);
+				if (incoming != null) {
+					trace(node, incoming, occupied, consumer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Traces a slide backwards, reporting every cell a slide can start from to
+	 * end up moving into the given cell in the given direction.
+	 * @param entered the cell the player moves into
+	 * @param direction the direction the player moves into the cell
+	 * @param occupied the cells the player is on after entering the cell; a slide
+	 * passing its start again is going in circles
+	 * @param consumer the consumer of the start cells and directions
+	 */
+	private void trace(final int entered, final Direction direction, final BitSet occupied, final Predecessors consumer) {
+		final BitSet seen = new BitSet(4 * CELLS);
+		int cell = entered;
+		Direction vector = direction;
+		while (true) {
+			final int previous = neighbor(cell, Direction.from(-vector.getDeltaX(), -vector.getDeltaY()));
+			if (previous == Level.NONE || seen.get(4 * previous + vector.ordinal())) {
+				return;
+			}
+			seen.set(4 * previous + vector.ordinal());
+			final TileType tile = at(previous);
+			if (!TileType.Empty.equals(tile) && !TileType.Wormhole.equals(tile) && !isDeflector(tile)) {
+				// walls and exits cannot be passed
+				return;
+			}
+			// the player may start anywhere on the way, unless the slide passes the start again
+			if (!occupied.get(previous)) {
+				consumer.accept(previous, vector);
+			}
+			occupied.set(previous);
+			if (isWormhole(previous)) {
+				cell = entrance(previous);
+			} else {
+				if (isDeflector(tile)) {
+					vector = undeflect(tile, vector);
+					if (vector == null) {
+						// no slide leaves the deflector this way, it can only start here
+						return;
+					}
+				}
+				cell = previous;
+			}
+		}
+	}
+
+	private TileType at(final int cell) {
+		return level.at(Level.x(cell), Level.y(cell));
+	}
+
+	/**
+	 * Checks if the given cell is a wormhole leading elsewhere; a single
+	 * wormhole leads to itself and is passed like an empty cell.
+	 */
+	private boolean isWormhole(final int cell) {
+		return TileType.Wormhole.equals(at(cell)) && level.otherWormhole(cell) != cell;
+	}
+
+	/**
+	 * Returns the wormhole leading to the given wormhole.
+	 */
+	private int entrance(final int wormhole) {
+		for (int other : level.wormholes) {
+			if (level.otherWormhole(other) == wormhole) {
+				return other;
+			}
+		}
+		return wormhole;
+	}
+
+	private static int neighbor(final int cell, final Direction direction) {
+		final int x = Level.x(cell) + direction.getDeltaX();
+		final int y = Level.y(cell) + direction.getDeltaY();
+		return x < 0 || x >= Level.WIDTH || y < 0 || y >= Level.HEIGHT ? Level.NONE : Level.cell(x, y);
+	}
+
+	private static boolean blocks(final TileType tile, final Direction vector) {
+		return TileType.Wall.equals(tile) || StatefulLevel.deflect(tile, vector) == null;
+	}
+
+	private static boolean isDeflector(final TileType tile) {
+		switch (tile) {
+		case DeflectorTL:
+		case DeflectorTR:
+		case DeflectorBR:
+		case DeflectorBL:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the direction a slide entered a deflector with, given the direction it leaves with.
+	 * @return the direction entering the deflector, {@code null} if no slide leaves it in that direction
+	 */
+	private static Direction undeflect(final TileType deflector, final Direction vector) {
+		for (Direction incoming : DIRECTIONS) {
+			if (StatefulLevel.deflect(deflector, incoming) == vector) {
+				return incoming;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Receives the predecessors of a node.
+	 */
+	@FunctionalInterface
+	private interface Predecessors {
+		void accept(int cell, Direction direction);
+	}
+
+	/**
+	 * A growing list of primitive ints.
+	 */
+	private static class IntList {
+
+		private int[] values = new int[16];
+		private int size;
+
+		void add(final int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size++] = value;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+
+	}
+
+}
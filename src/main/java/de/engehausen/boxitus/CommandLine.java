@@ -0,0 +1,210 @@
+package de.engehausen.boxitus;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Command line of the tools of this package. A tool declares its options,
+ * each taking one value, and whether it accepts level codes; the usage is
+ * derived from the declarations. Invalid arguments are reported together
+ * with the usage and end the program with exit code 1, so they are noticed
+ * before any work is done.
+ */
+class CommandLine {
+
+	private static final String HELP = "--help";
+
+	private final String tool;
+	private final boolean acceptCodes;
+	/** the description of each option by name, including the value placeholder */
+	private final Map<String, String[]> options;
+	private final List<String> notes;
+	private final Map<String, String> values;
+	private final List<String> codes;
+
+	/**
+	 * Creates the command line of a tool.
+	 * @param toolClass the class with the main method of the tool, must not be {@code null}
+	 * @param levelCodes {@code true} if the tool accepts level codes besides the options
+	 */
+	CommandLine(final Class<?> toolClass, final boolean levelCodes) {
+		tool = toolClass.getName();
+		acceptCodes = levelCodes;
+		options = new LinkedHashMap<>();
+		notes = new ArrayList<>();
+		values = new HashMap<>();
+		codes = new ArrayList<>();
+	}
+
+	/**
+	 * Declares an option.
+	 * @param name the name of the option, e.g. {@code --levels}, must not be {@code null}
+	 * @param value the placeholder of the value in the usage, e.g. {@code <file>}, must not be {@code null}
+	 * @param description the description in the usage, must not be {@code null}
+	 * @return this command line
+	 */
+	CommandLine option(final String name, final String value, final String description) {
+		options.put(name, new String[] { value, description });
+		return this;
+	}
+
+	/**
+	 * Adds a line to the end of the usage.
+	 * @param note the line, must not be {@code null}
+	 * @return this command line
+	 */
+	CommandLine note(final String note) {
+		notes.add(note);
+		return this;
+	}
+
+	/**
+	 * Returns the usage of the tool.
+	 * @return the usage, never {@code null}
+	 */
+	String usage() {
+		int width = HELP.length();
+		for (Map.Entry<String, String[]> entry : options.entrySet()) {
+			width = Math.max(width, entry.getKey().length() + 1 + entry.getValue()[0].length());
+		}
+		final String format = "  %-" + (width + 2) + "s%s";
+		final List<String> lines = new ArrayList<>();
+		lines.add("usage: " + tool + " [options]" + (acceptCodes ? " [code...]" : ""));
+		options.forEach((name, description) -> lines.add(String.format(format, name + ' ' + description[0], description[1])));
+		lines.add(String.format(format, HELP, "print this usage"));
+		lines.addAll(notes);
+		return String.join(System.lineSeparator(), lines);
+	}
+
+	/**
+	 * Parses the arguments of the tool. An unknown option or an option
+	 * without a value ends the program.
+	 * @param args the arguments, must not be {@code null}
+	 * @return {@code false} if the usage was requested and printed,
+	 * the tool must not do anything else then
+	 */
+	boolean parse(final String... args) {
+		for (int i = 0; i < args.length; i++) {
+			final String arg = args[i];
+			if (HELP.equals(arg)) {
+				System.out.println(usage());
+				return false;
+			} else if (options.containsKey(arg)) {
+				if (++i == args.length) {
+					throw fail("missing value of option " + arg);
+				}
+				values.put(arg, args[i]);
+			} else if (arg.startsWith("--") || !acceptCodes) {
+				throw fail("unknown option " + arg);
+			} else {
+				codes.add(arg);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the value of an option.
+	 * @param <T> the type of the value
+	 * @param name the name of the declared option, must not be {@code null}
+	 * @param parser converts the value, throws an {@link IllegalArgumentException}
+	 * if it is invalid; must not be {@code null}
+	 * @param defaultValue the value if the option is not given, may be {@code null}
+	 * @return the value, or the default value
+	 */
+	<T> T get(final String name, final Function<String, T> parser, final T defaultValue) {
+		final String value = values.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return parser.apply(value);
+		} catch (IllegalArgumentException e) {
+			throw fail("invalid value " + value + " of option " + name);
+		}
+	}
+
+	/**
+	 * Returns the value of an integer option.
+	 * @param name the name of the declared option, must not be {@code null}
+	 * @param defaultValue the value if the option is not given
+	 * @return the value, or the default value
+	 */
+	int getInt(final String name, final int defaultValue) {
+		return get(name, Integer::valueOf, Integer.valueOf(defaultValue)).intValue();
+	}
+
+	/**
+	 * Returns the value of a long option.
+	 * @param name the name of the declared option, must not be {@code null}
+	 * @param defaultValue the value if the option is not given
+	 * @return the value, or the default value
+	 */
+	long getLong(final String name, final long defaultValue) {
+		return get(name, Long::valueOf, Long.valueOf(defaultValue)).longValue();
+	}
+
+	/**
+	 * Returns the value of a decimal option.
+	 * @param name the name of the declared option, must not be {@code null}
+	 * @param defaultValue the value if the option is not given
+	 * @return the value, or the default value
+	 */
+	double getDouble(final String name, final double defaultValue) {
+		return get(name, Double::valueOf, Double.valueOf(defaultValue)).doubleValue();
+	}
+
+	/**
+	 * Returns the value of a file option.
+	 * @param name the name of the declared option, must not be {@code null}
+	 * @return the file, or {@code null} if the option is not given
+	 */
+	File getFile(final String name) {
+		return get(name, File::new, null);
+	}
+
+	/**
+	 * Returns the level codes given.
+	 * @return the level codes in the order given, never {@code null}
+	 */
+	List<String> getCodes() {
+		return Collections.unmodifiableList(codes);
+	}
+
+	/**
+	 * Loads a level catalog and looks up the level codes given in it.
+	 * An unknown code ends the program.
+	 * @param levelFile the catalog, or {@code null} for the built-in levels
+	 * @return the catalog, never {@code null}
+	 * @throws IOException if the catalog cannot be read
+	 */
+	Levels load(final File levelFile) throws IOException {
+		try {
+			final Levels levels = Levels.load(levelFile);
+			codes.forEach(levels::require);
+			return levels;
+		} catch (IllegalArgumentException e) {
+			throw fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Reports an invalid command line together with the usage and ends the program.
+	 * @param message the problem, must not be {@code null}
+	 * @return never returns; declared so callers can {@code throw} it to end their flow
+	 */
+	IllegalArgumentException fail(final String message) {
+		System.err.println(message);
+		System.err.println(usage());
+		System.exit(1);
+		return new IllegalArgumentException(message);
+	}
+
+}
@@ -0,0 +1,134 @@
+package de.engehausen.boxitus;
+
+/**
+ * Difficulty metrics of a level, computed from its complete state graph
+ * (see {@link HierarchicalSearch#rate(java.util.function.Predicate)}).
+ * <p>
+ * The {@link #getScore() score} combines the metrics into a single number:
+ * the optimal length, weighted by the share of dead states, plus two points
+ * for every bit of decision along the optimal path (a move with one right
+ * choice among four that keep the exit reachable is worth two bits), minus
+ * one point for every doubling of the number of optimal solutions.
+ * The score is only meaningful to compare levels with each other.
+ */
+public class Difficulty {
+
+	private final int length;
+	private final long optimalSolutions;
+	private final int states;
+	private final int nodes;
+	private final double deadRatio;
+	private final double branching;
+	private final double decisionBits;
+
+	/**
+	 * Creates the metrics.
+	 * @param optimalLength the length of the shortest solution, 0 if the level cannot be solved
+	 * @param solutions the number of distinct shortest solutions
+	 * @param stateCount the number of distinct level states reachable
+	 * @param nodeCount the number of resting positions reachable over all level states
+	 * @param dead the share of resting positions from which the exit cannot be reached
+	 * @param choices the average number of moves along the optimal path which keep the exit reachable
+	 * @param bits the information needed to pick the optimal moves among those, in bits
+	 */
+	public Difficulty(final int optimalLength, final long solutions, final int stateCount, final int nodeCount, final double dead, final double choices, final double bits) {
+		length = optimalLength;
+		optimalSolutions = solutions;
+		states = stateCount;
+		nodes = nodeCount;
+		deadRatio = dead;
+		branching = choices;
+		decisionBits = bits;
+	}
+
+	/**
+	 * Returns whether the level can be solved.
+	 * @return {@code true} if the level has a solution
+	 */
+	public boolean isSolvable() {
+		return length > 0;
+	}
+
+	/**
+	 * Returns the length of the shortest solution.
+	 * @return the number of moves, 0 if the level cannot be solved
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the number of distinct shortest solutions.
+	 * @return the number of solutions, saturated at {@link Long#MAX_VALUE}
+	 */
+	public long getOptimalSolutions() {
+		return optimalSolutions;
+	}
+
+	/**
+	 * Returns the number of distinct level states reachable.
+	 * @return the number of level states
+	 */
+	public int getStates() {
+		return states;
+	}
+
+	/**
+	 * Returns the number of resting positions reachable over all level states.
+	 * @return the number of positions
+	 */
+	public int getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the share of reachable resting positions from which the exit cannot be reached.
+	 * @return the dead state ratio between 0 and 1
+	 */
+	public double getDeadRatio() {
+		return deadRatio;
+	}
+
+	/**
+	 * Returns the average number of moves along the optimal path which keep the exit reachable.
+	 * @return the branching factor along the optimal path
+	 */
+	public double getBranching() {
+		return branching;
+	}
+
+	/**
+	 * Returns the information needed to pick the optimal moves along the optimal path.
+	 * @return the decision bits
+	 */
+	public double getDecisionBits() {
+		return decisionBits;
+	}
+
+	/**
+	 * Returns the difficulty score.
+	 * @return the score, 0 for levels which cannot be solved
+	 */
+	public double getScore() {
+		if (!isSolvable()) {
+			return 0;
+		}
+		final double score = length * (1 + deadRatio) + 2 * decisionBits - Math.log(optimalSolutions) / Math.log(2);
+		return Math.max(0, score);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		if (!isSolvable()) {
+			return String.format("unsolvable, %d states, %d positions", states, nodes);
+		}
+		return String.format(
+			"score %.1f, %d moves, %d optimal solutions, %d states, %d positions, %.0f%% dead, branching %.2f, %.1f decision bits",
+			getScore(), length, optimalSolutions, states, nodes, 100 * deadRatio, branching, decisionBits
+		);
+	}
+
+}
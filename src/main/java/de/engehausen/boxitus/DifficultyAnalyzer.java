@@ -0,0 +1,140 @@
+package de.engehausen.boxitus;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Rates the difficulty of the levels of a catalog in parallel and ranks them.
+ * Levels are rated with {@link HierarchicalSearch#rate(java.util.function.Predicate)}
+ * within a time and step budget per level; levels exceeding it are ranked last.
+ */
+public class DifficultyAnalyzer {
+
+	private final Levels levels;
+	private final int threads;
+	private final long millis;
+	private final long maxSteps;
+
+	/**
+	 * Creates the analyzer.
+	 * @param catalog the levels to rate, must not be {@code null}
+	 * @param threadCount the number of levels to rate in parallel
+	 * @param time the time limit per level in milliseconds, zero or less for no limit
+	 * @param steps the maximum number of level states to explore per level, zero or less for no limit
+	 */
+	public DifficultyAnalyzer(final Levels catalog, final int threadCount, final long time, final long steps) {
+		levels = catalog;
+		threads = Math.max(1, threadCount);
+		millis = time;
+		maxSteps = steps;
+	}
+
+	/**
+	 * Rates the levels with the given codes.
+	 * @param codes the codes of the levels to rate, must not be {@code null}
+	 * @return the difficulties by level code, easiest first; levels which cannot be solved come last,
+	 * followed by the levels which could not be rated within the budget with a {@code null} difficulty
+	 * @throws InterruptedException if interrupted while waiting for the results
+	 */
+	public Map<String, Difficulty> rate(final Collection<String> codes) throws InterruptedException {
+		final Map<String, Future<Difficulty>> futures = new LinkedHashMap<>();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (String code : codes) {
+				// level creation is not thread-safe, do it here
+				final Level level = levels.require(code);
+				futures.put(code, executor.submit(() -> rate(level)));
+			}
+			final List<Map.Entry<String, Difficulty>> ranking = new ArrayList<>(futures.size());
+			for (Map.Entry<String, Future<Difficulty>> entry : futures.entrySet()) {
+				try {
+					ranking.add(new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().get()));
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(entry.getKey(), e.getCause());
+				}
+			}
+			ranking.sort((a, b) -> {
+				final int order = Integer.compare(rank(a.getValue()), rank(b.getValue()));
+				return order != 0 || a.getValue() == null ? order : Double.compare(a.getValue().getScore(), b.getValue().getScore());
+			});
+			final Map<String, Difficulty> result = new LinkedHashMap<>();
+			ranking.forEach(entry -> result.put(entry.getKey(), entry.getValue()));
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the group of a difficulty in the ranking.
+	 * @param difficulty the difficulty, may be {@code null}
+	 * @return 0 for solvable levels, 1 for unsolvable ones and 2 for levels not rated
+	 */
+	private static int rank(final Difficulty difficulty) {
+		if (difficulty == null) {
+			return 2;
+		}
+		return difficulty.isSolvable() ? 0 : 1;
+	}
+
+	/**
+	 * Rates a single level within the budget.
+	 * @param level the level to rate, must not be {@code null}
+	 * @return the difficulty, or {@code null} if the budget was exhausted or the thread was interrupted
+	 */
+	protected Difficulty rate(final Level level) {
+		final SolveBudget budget = new SolveBudget(millis, maxSteps, 0, ignore -> !Thread.currentThread().isInterrupted());
+		return new HierarchicalSearch(level, new SlideAnalysis(level)).rate(budget);
+	}
+
+	public static void main(final String... args) throws IOException, InterruptedException {
+		final CommandLine commandLine = new CommandLine(DifficultyAnalyzer.class, true)
+			.option("--levels", "<file>", "the level catalog (default: the built-in levels.json)")
+			.option("--threads", "<n>", "the number of levels to rate in parallel (default: number of cores)")
+			.option("--time", "<seconds>", "the time limit per level (default: unlimited)")
+			.option("--steps", "<n>", "the maximum number of level states to explore per level (default: 1000000)")
+			.option("--out", "<file>", "the file to write the ranking to (default: standard output)")
+			.note("Without codes all levels of the catalog are rated. The ranking lists the easiest level first, levels not rated within the limits last.");
+		if (!commandLine.parse(args)) {
+			return;
+		}
+		final int threads = commandLine.getInt("--threads", Runtime.getRuntime().availableProcessors());
+		final long time = 1000L * commandLine.getLong("--time", 0);
+		final long steps = commandLine.getLong("--steps", 1000000);
+		final File out = commandLine.getFile("--out");
+		final Levels levels = commandLine.load(commandLine.getFile("--levels"));
+		final List<String> codes = commandLine.getCodes();
+		final long start = System.currentTimeMillis();
+		final Map<String, Difficulty> ranking = new DifficultyAnalyzer(levels, threads, time, steps)
+			.rate(codes.isEmpty() ? levels.index : codes);
+		for (Map.Entry<String, Difficulty> entry : ranking.entrySet()) {
+			System.err.println(entry.getKey() + ": " + (entry.getValue() == null ? "not rated within the limits" : entry.getValue()));
+		}
+		final long rated = ranking.values().stream().filter(difficulty -> difficulty != null).count();
+		System.err.println(rated + " of " + ranking.size() + " levels rated (" + (System.currentTimeMillis() - start) + "ms)");
+		if (out == null) {
+			System.out.println(
+				Levels
+					.getObjectMapper()
+					.writerWithDefaultPrettyPrinter()
+					.writeValueAsString(ranking)
+			);
+		} else {
+			Levels
+				.getObjectMapper()
+				.writerWithDefaultPrettyPrinter()
+				.writeValue(out, ranking);
+		}
+	}
+
+}
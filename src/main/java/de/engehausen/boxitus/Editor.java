@@ -25,6 +25,7 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
@@ -33,11 +34,13 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.IntConsumer;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.BoxLayout;
 import javax.swing.DefaultListCellRenderer;
+import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.InputMap;
 import javax.swing.JButton;
@@ -58,6 +61,7 @@ import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.filechooser.FileFilter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -78,6 +82,7 @@ public class Editor extends JFrame implements ActionListener {
 	private final LevelPanel levelPanel;
 	private final TilePanel tilePanel;
 	private final JList<Level> levelList;
+	private final LevelThumbnails thumbnails;
 	private final Clipboard clipboard;
 	
 	private final JButton shiftLeft;
@@ -116,10 +121,20 @@ public class Editor extends JFrame implements ActionListener {
 		root.add(tilePanel, BorderLayout.SOUTH);
 		getContentPane().add(root);
 		setJMenuBar(createMenuBar());
-		levelList = new JList<>(new Levels());
+		levelList = new JList<>(new LevelListModel(new Levels()));
 		levelList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		thumbnails = new LevelThumbnails(tileRenderers, 1024, () -> levelList.repaint());
+		levelList.getModel().addListDataListener(thumbnails);
+		levelList.addPropertyChangeListener("model", evt -> {
+			((LevelListModel) evt.getOldValue()).removeListDataListener(thumbnails);
+			((LevelListModel) evt.getNewValue()).addListDataListener(thumbnails);
+		});
+		// fixed cell sizes, otherwise the list measures every single cell
+		levelList.setFixedCellWidth(LevelThumbnails.WIDTH + 8);
+		levelList.setFixedCellHeight(LevelThumbnails.HEIGHT + 24);
 		levelList.setCellRenderer(new DefaultListCellRenderer() {
 			private static final long serialVersionUID = 1L;
+			private final ThumbnailIcon icon = new ThumbnailIcon();
 			@Override
 			public Component getListCellRendererComponent(
 				final JList<?> list,
@@ -127,8 +142,14 @@ public class Editor extends JFrame implements ActionListener {
 				final int index,
 				final boolean isSelected,
 				final boolean cellHasFocus) {
-				final Levels levels = (Levels) list.getModel();
-				return super.getListCellRendererComponent(list, levels.index.get(index), index, isSelected, cellHasFocus);
+				final LevelListModel levels = (LevelListModel) list.getModel();
+				super.getListCellRendererComponent(list, levels.getCode(index), index, isSelected, cellHasFocus);
+				icon.image = thumbnails.get(levels.getElementAt(index));
+				setIcon(icon);
+				setHorizontalAlignment(CENTER);
+				setHorizontalTextPosition(CENTER);
+				setVerticalTextPosition(BOTTOM);
+				return this;
 			}
 		});
 		removeDefaultCopyPaste(levelList);
@@ -153,23 +174,23 @@ public class Editor extends JFrame implements ActionListener {
 				if (e.isShiftDown()) {
 					if (KeyEvent.VK_UP == kc) {
 						if (idx > 0) {
-							((Levels) levelList.getModel()).swap(idx - 1, idx);
+							((LevelListModel) levelList.getModel()).swap(idx - 1, idx);
 							editor.setDirty(true);
 						}
 					} else if (KeyEvent.VK_DOWN == kc) {
 						if (idx < levelList.getModel().getSize()) {
-							((Levels) levelList.getModel()).swap(idx, idx + 1);
+							((LevelListModel) levelList.getModel()).swap(idx, idx + 1);
 							editor.setDirty(true);
 						}
 					}
 				} else if (KeyEvent.VK_DELETE == kc && idx >= 0) {
-					((Levels) levelList.getModel()).removeLevel(idx);
+					((LevelListModel) levelList.getModel()).removeLevel(idx);
 					editor.setDirty(true);
 				}
 			}
 		});
 		final JScrollPane scroller = new JScrollPane(levelList, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
-		scroller.setPreferredSize(new Dimension(52, 128));
+		scroller.setPreferredSize(new Dimension(LevelThumbnails.WIDTH + 32, 128));
 		root.add(scroller, BorderLayout.WEST);
 		final JPanel buttons = new JPanel();
 		buttons.setLayout(new BoxLayout(buttons, BoxLayout.Y_AXIS));
@@ -204,6 +225,10 @@ public class Editor extends JFrame implements ActionListener {
 	 */
 	public void setDirty(final boolean flag) {
 		dirty = flag;
+		if (flag) {
+			thumbnails.invalidate(levelPanel.getLevel());
+			levelList.repaint();
+		}
 		levelList.requestFocus();
 	}
 
@@ -404,6 +429,7 @@ public class Editor extends JFrame implements ActionListener {
 					}
 				}
 				editor.clipboard.setContents(this, null);
+				editor.setDirty(true);
 				SwingUtilities.invokeLater(() -> editor.levelPanel.repaint());
 			}
 		}
@@ -454,7 +480,7 @@ public class Editor extends JFrame implements ActionListener {
 				final File file = fc.getSelectedFile();
 				if (file.exists()) {
 					try {
-						editor.levelList.setModel(Levels.load(new FileInputStream(file)));
+						editor.levelList.setModel(new LevelListModel(Levels.load(new FileInputStream(file))));
 						editor.levelList.setSelectedIndex(0);
 						editor.levelPanel.setLevel(editor.levelList.getSelectedValue());
 						editor.setDirty(false);
@@ -506,7 +532,7 @@ public class Editor extends JFrame implements ActionListener {
 						}
 					}
 					try {
-						Levels.save((Levels) editor.levelList.getModel(), new FileOutputStream(file));
+						Levels.save(((LevelListModel) editor.levelList.getModel()).getLevels(), new FileOutputStream(file));
 						editor.setDirty(false);
 						editor.lastFolder = fc.getCurrentDirectory();
 						editor.fileName = file.getName();
@@ -530,7 +556,7 @@ public class Editor extends JFrame implements ActionListener {
 
 		@Override
 		public void actionPerformed(final ActionEvent event) {
-			final Levels levels = (Levels) editor.levelList.getModel();
+			final LevelListModel levels = (LevelListModel) editor.levelList.getModel();
 			levels.addLevel(new Level());
 			editor.levelList.setSelectedIndex(levels.getSize() - 1);
 			editor.setDirty(true);
@@ -548,7 +574,7 @@ public class Editor extends JFrame implements ActionListener {
 
 		@Override
 		public void actionPerformed(final ActionEvent event) {
-			final Levels levels = (Levels) editor.levelList.getModel();
+			final LevelListModel levels = (LevelListModel) editor.levelList.getModel();
 			JOptionPane.showConfirmDialog(editor, new JTextField(levels.asDataURL(), 60), "Data URL", JOptionPane.DEFAULT_OPTION, JOptionPane.INFORMATION_MESSAGE, null);
 		}
 		
@@ -565,9 +591,10 @@ public class Editor extends JFrame implements ActionListener {
 		private final JTextField instructions;
 		private final JButton plus;
 		private final JButton minus;
+		private final JButton play;
 		private volatile boolean running;
 		private JDialog dialog;
-		private List<List<Move>> moves;
+		private List<SolutionPath> moves;
 		private int selection;
 				
 		protected SolveAction(final Editor instance) {
@@ -593,6 +620,8 @@ public class Editor extends JFrame implements ActionListener {
 			plus.addActionListener(this);
 			minus = new JButton("-");
 			minus.addActionListener(this);
+			play = new JButton("play");
+			play.addActionListener(this);
 			setInstructions(-1);
 		}
 
@@ -603,15 +632,15 @@ public class Editor extends JFrame implements ActionListener {
 				final Level level = editor.levelPanel.getLevel();
 				if (level != null) {
 					run.setEnabled(false);
-					if (level.playerPosition != null && level.exitPosition != null) {
+					if (level.playerPosition != Level.NONE && level.exitPosition != Level.NONE) {
 						running = true;
 						cancel.setEnabled(true);
 						movePanel.hasBombs = level.hasBombs();
-						final Solver solver = new Solver(level);
+						final Solver solver = new Solver(level, Solver.Engine.DEPTH_FIRST, SolutionCache.getDefault());
 						new Thread(() -> {
-							setMoves(solver.solve(x -> {
+							setMoves(solver.solve(new SolveBudget(0, 0, 0, x -> {
 								return running;
-							}));
+							})).getPaths());
 							cancel.setEnabled(false);
 						}).start();
 					}
@@ -626,20 +655,29 @@ public class Editor extends JFrame implements ActionListener {
 				setInstructions(selection + 1);
 			} else if (minus.equals(source)) {
 				setInstructions(selection - 1);
+			} else if (play.equals(source)) {
+				if (movePanel.isPlaying()) {
+					movePanel.stop();
+				} else {
+					play.setText("stop");
+					movePanel.play(slider::setValue, () -> play.setText("play"));
+				}
 			} else {
 				if (dialog != null) {
+					movePanel.stop();
 					dialog.setVisible(false);
 					instructions.setText("");
 					cancel.setEnabled(false);
 					plus.setEnabled(false);
 					minus.setEnabled(false);
+					play.setEnabled(false);
 					slider.setValue(0);
 					dialog = null;
 					return;
 				}
 				final Level level = editor.levelPanel.getLevel();
 				if (level != null) {
-					run.setEnabled(level.playerPosition != null && level.exitPosition != null);
+					run.setEnabled(level.playerPosition != Level.NONE && level.exitPosition != Level.NONE);
 				}
 				dialog = new JDialog(editor, "Level solver...", ModalityType.MODELESS);
 				dialog.setDefaultCloseOperation(HIDE_ON_CLOSE);
@@ -669,6 +707,7 @@ public class Editor extends JFrame implements ActionListener {
 				textPanel.add(instructions);
 				textPanel.add(plus);
 				textPanel.add(minus);
+				textPanel.add(play);
 				root.add(textPanel);
 				dialog.add(root);
 				dialog.pack();
@@ -677,7 +716,7 @@ public class Editor extends JFrame implements ActionListener {
 			}
 		}
 
-		private void setMoves(final List<List<Move>> list) {
+		private void setMoves(final List<SolutionPath> list) {
 			moves = list;
 			setInstructions(0);
 		}
@@ -688,16 +727,20 @@ public class Editor extends JFrame implements ActionListener {
 				selection = idx;
 				plus.setEnabled(idx < max - 1);
 				minus.setEnabled(idx > 0);
+				play.setEnabled(true);
 				instructions.setText(moves.get(idx).toString());
 				slider.setMinimum(0);
 				slider.setValue(0);
 				slider.setMaximum(moves.get(idx).size() - 1);
 				slider.setEnabled(true);
 				slider.requestFocus();
-				movePanel.setMoves(moves.get(idx));
+				// the level states of the moves are only restored for the solution shown
+				final List<Move> replayed = moves.get(idx).moves();
+				movePanel.setMoves(replayed == null ? Collections.emptyList() : replayed);
 			} else {
 				plus.setEnabled(false);
 				minus.setEnabled(false);
+				play.setEnabled(false);
 				instructions.setText("");
 				movePanel.setMoves(Collections.emptyList());
 				selection = -1;
@@ -706,14 +749,52 @@ public class Editor extends JFrame implements ActionListener {
 
 	}
 
+	private static class ThumbnailIcon implements Icon {
+
+		private static final Color PLACEHOLDER = new Color(32, 32, 32);
+
+		private BufferedImage image;
+
+		@Override
+		public void paintIcon(final Component c, final Graphics g, final int x, final int y) {
+			if (image != null) {
+				g.drawImage(image, x, y, null);
+			} else {
+				g.setColor(PLACEHOLDER);
+				g.fillRect(x, y, getIconWidth(), getIconHeight());
+			}
+		}
+
+		@Override
+		public int getIconWidth() {
+			return LevelThumbnails.WIDTH;
+		}
+
+		@Override
+		public int getIconHeight() {
+			return LevelThumbnails.HEIGHT;
+		}
+
+	}
+
 	private static class MovePanel extends LevelPanel {
 
 		private static final long serialVersionUID = 1L;
+		private static final double TICKS_PER_SECOND = 12.5;
 
 		private List<Move> moves;
 		private int selection;
 		private String info;
 		private boolean hasBombs;
+		private SlideTimeline timeline;
+		private Timer timer;
+		private BufferedImage board;
+		private int boardMove;
+		private double startTick;
+		private long started;
+		private Point2D.Double player;
+		private IntConsumer onProgress;
+		private Runnable onStop;
 		
 		public MovePanel(final LevelPanel parent) {
 			super(parent);
@@ -728,7 +809,9 @@ public class Editor extends JFrame implements ActionListener {
 		}
 
 		public void setMoves(final List<Move> list) {
+			stop();
 			moves = list;
+			timeline = null;
 			setSelection(0);
 			if (selection < 0 && getLevel() == null) {
 				info = hasBombs ? "no direct solutions found\ntime-dependent solutions may exist" : "no solutions found";
@@ -739,6 +822,13 @@ public class Editor extends JFrame implements ActionListener {
 		}
 		
 		public void setSelection(final int index) {
+			if (isPlaying()) {
+				if (index == selection) {
+					// the playback reports its progress
+					return;
+				}
+				stop();
+			}
 			if (index < 0 || index >= moves.size()) {
 				selection = -1;
 			} else {
@@ -750,17 +840,128 @@ public class Editor extends JFrame implements ActionListener {
 			}
 		}
 
+		public boolean isPlaying() {
+			return timer != null;
+		}
+
+		/**
+		 * Plays the moves from the current selection on.
+		 * @param progress receives the index of the move being played
+		 * @param stopped called when the playback ends
+		 */
+		public void play(final IntConsumer progress, final Runnable stopped) {
+			stop();
+			if (moves.isEmpty()) {
+				stopped.run();
+				return;
+			}
+			if (timeline == null) {
+				timeline = new SlideTimeline(moves);
+			}
+			onProgress = progress;
+			onStop = stopped;
+			boardMove = Math.max(0, selection);
+			board = renderBoard(timeline.stateBefore(boardMove));
+			startTick = timeline.start(boardMove);
+			started = System.nanoTime();
+			player = timeline.positionAt(startTick);
+			timer = new Timer(1000 / 60, e -> frame());
+			timer.start();
+			repaint();
+		}
+
+		public void stop() {
+			if (timer != null) {
+				timer.stop();
+				timer = null;
+				board = null;
+				if (selection >= 0) {
+					setLevel(moves.get(selection).getLevel());
+				}
+				onStop.run();
+				repaint();
+			}
+		}
+
+		private void frame() {
+			final double tick = startTick + TICKS_PER_SECOND * (System.nanoTime() - started) / 1e9;
+			final int move = timeline.moveAt(tick);
+			while (boardMove < move) {
+				// the move is complete, show the tiles it changed
+				updateBoard(timeline.changes(boardMove), timeline.stateBefore(boardMove + 1));
+				boardMove++;
+			}
+			final Point2D.Double next = timeline.positionAt(tick);
+			repaintTile(player.x, player.y);
+			repaintTile(next.x, next.y);
+			player = next;
+			if (move >= timeline.size()) {
+				stop();
+			} else if (move != selection) {
+				selection = move;
+				onProgress.accept(move);
+			}
+		}
+
+		private BufferedImage renderBoard(final Level level) {
+			final BufferedImage result = new BufferedImage(32 * Level.WIDTH, 32 * Level.HEIGHT, BufferedImage.TYPE_INT_RGB);
+			final Graphics2D g2d = result.createGraphics();
+			try {
+				g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				g2d.setColor(Color.BLACK);
+				g2d.fillRect(0, 0, result.getWidth(), result.getHeight());
+				getRenderers().render(g2d, level);
+			} finally {
+				g2d.dispose();
+			}
+			return result;
+		}
+
+		private void updateBoard(final List<Point> cells, final Level level) {
+			final Graphics2D g2d = board.createGraphics();
+			try {
+				g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				for (final Point cell : cells) {
+					g2d.setClip(32 * cell.x, 32 * cell.y, 32, 32);
+					g2d.setColor(Color.BLACK);
+					g2d.fillRect(32 * cell.x, 32 * cell.y, 32, 32);
+					// traps paint into their neighbours
+					getRenderers().render(g2d, level, cell.x - 1, cell.y - 1, cell.x + 2, cell.y + 2);
+					repaint(32 * cell.x, 32 * cell.y, 32, 32);
+				}
+			} finally {
+				g2d.dispose();
+			}
+		}
+
+		private void repaintTile(final double x, final double y) {
+			repaint((int) x - 1, (int) y - 1, 34, 34);
+		}
+
 		@Override
 		public void paint(final Graphics g) {
+			if (board != null) {
+				g.drawImage(board, 0, 0, null);
+				final Graphics2D g2d = (Graphics2D) g;
+				g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				final AffineTransform transform = g2d.getTransform();
+				g2d.translate(player.x, player.y);
+				getRenderers().renderer(TileType.Player).accept(g2d);
+				g2d.setTransform(transform);
+				return;
+			}
+			paintSelection(g);
+		}
+
+		private void paintSelection(final Graphics g) {
 			super.paint(g);
 			if (selection >= 0) {
 				final Move move = moves.get(selection);
 				if (move != null) {
 					final Graphics2D g2d = (Graphics2D) g;
-					final Point p = move.getPosition();
 					g2d.setColor(Color.WHITE);
 					final AffineTransform transform = g2d.getTransform();
-					g2d.translate(p.x + 15, p.y + 15);
+					g2d.translate(32 * Level.x(move.getCell()) + 15, 32 * Level.y(move.getCell()) + 15);
 					g2d.rotate(Math.toRadians(move.direction().getAngle()));
 					final Path2D.Double path = new Path2D.Double();
 					path.moveTo(-8, -3);
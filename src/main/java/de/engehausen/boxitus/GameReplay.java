@@ -0,0 +1,125 @@
+package de.engehausen.boxitus;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * Replays solutions in the {@link GameSimulation simulated game} in parallel,
+ * to find levels where the game does not play out as the solver expects.
+ */
+public class GameReplay {
+
+	private final Levels levels;
+	private final int threads;
+
+	/**
+	 * Creates the replay.
+	 * @param catalog the levels the solutions are for, must not be {@code null}
+	 * @param threadCount the number of levels to replay in parallel
+	 */
+	public GameReplay(final Levels catalog, final int threadCount) {
+		levels = catalog;
+		threads = Math.max(1, threadCount);
+	}
+
+	/**
+	 * Replays the given solutions.
+	 * @param solutions the moves to play by level code, must not be {@code null}
+	 * @return the results by level code, in order of the codes
+	 * @throws InterruptedException if interrupted while waiting for the results
+	 */
+	public Map<String, ReplayResult> replay(final Map<String, List<Direction>> solutions) throws InterruptedException {
+		final Map<String, Future<ReplayResult>> futures = new TreeMap<>();
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (Map.Entry<String, List<Direction>> entry : solutions.entrySet()) {
+				// level creation is not thread-safe, do it here
+				final Level level = levels.require(entry.getKey());
+				futures.put(entry.getKey(), executor.submit(() -> replay(level, entry.getValue())));
+			}
+			final Map<String, ReplayResult> result = new TreeMap<>();
+			for (Map.Entry<String, Future<ReplayResult>> entry : futures.entrySet()) {
+				try {
+					result.put(entry.getKey(), entry.getValue().get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(entry.getKey(), e.getCause());
+				}
+			}
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Replays a single solution.
+	 * @param level the level to play, must not be {@code null}
+	 * @param directions the moves to play, must not be {@code null}
+	 * @return the result, never {@code null}
+	 */
+	protected ReplayResult replay(final Level level, final List<Direction> directions) {
+		return new GameSimulation(level).replay(directions);
+	}
+
+	public static void main(final String... args) throws IOException, InterruptedException {
+		final CommandLine commandLine = new CommandLine(GameReplay.class, true)
+			.option("--levels", "<file>", "the level catalog (default: the built-in levels.json)")
+			.option("--solutions", "<file>", "the solutions to replay (default: src/test/resources/solutions.json)")
+			.option("--threads", "<n>", "the number of levels to replay in parallel (default: number of cores)")
+			.note("Without codes all solutions are replayed, empty solutions are skipped. The exit code is 1 if any solution does not solve its level in the game.");
+		if (!commandLine.parse(args)) {
+			return;
+		}
+		final File solutionFile = commandLine.get("--solutions", File::new, new File("src/test/resources/solutions.json"));
+		final int threads = commandLine.getInt("--threads", Runtime.getRuntime().availableProcessors());
+		final Levels levels = commandLine.load(commandLine.getFile("--levels"));
+		Map<String, List<Direction>> solutions = Levels
+			.getObjectMapper()
+			.readValue(solutionFile, new TypeReference<Map<String, List<Direction>>>() {});
+		if (!commandLine.getCodes().isEmpty()) {
+			final Map<String, List<Direction>> selected = new TreeMap<>();
+			for (String code : commandLine.getCodes()) {
+				if (!solutions.containsKey(code)) {
+					throw commandLine.fail("no solution for level code " + code);
+				}
+				selected.put(code, solutions.get(code));
+			}
+			solutions = selected;
+		}
+		for (String code : solutions.keySet()) {
+			if (!levels.index.contains(code)) {
+				throw commandLine.fail("unknown level code " + code);
+			}
+		}
+		// levels the solver cannot solve have no moves to play
+		solutions.values().removeIf(List::isEmpty);
+		final long start = System.currentTimeMillis();
+		final Map<String, ReplayResult> results = new GameReplay(levels, threads).replay(solutions);
+		final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		boolean ok = true;
+		long played = 0;
+		for (Map.Entry<String, ReplayResult> entry : results.entrySet()) {
+			final ReplayResult result = entry.getValue();
+			System.err.println(entry.getKey() + ": " + result);
+			ok &= result.isSolved() && result.getDivergence() < 0;
+			played += result.getMillis();
+		}
+		System.err.println(String.format(
+			"%d solutions replayed, %dms of play in %dms (%d times real time)",
+			results.size(), played, elapsed, played / elapsed
+		));
+		System.exit(ok ? 0 : 1);
+	}
+
+}
@@ -0,0 +1,791 @@
+package de.engehausen.boxitus;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.engehausen.boxitus.Level.TileType;
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * A headless simulation of the browser game, step by step. It mirrors
+ * {@code src/Level.ts} and its tiles: the player moves {@link #SPEED} pixels
+ * per step and touches the tile ahead of it, bombs count down every 40 steps
+ * once touched, traps turn into walls a few steps after the player passed
+ * and sensors and the exit are checked as in the game. Graphics, sounds and
+ * the random animations are left out, so a level plays many thousand times
+ * faster than in the browser.
+ * <p>
+ * The browser game simulates {@link #STEPS_PER_SECOND} steps per second, whatever
+ * the refresh rate of the display, and only draws the player in between.
+ * A simulation plays a level once and is not thread-safe.
+ */
+public class GameSimulation {
+
+	/** the number of steps per second of the browser game ({@code Level.STEPS_PER_SECOND}) */
+	public static final int STEPS_PER_SECOND = 60;
+	/** the distance the player moves per step in pixels ({@code Player.SPEED}) */
+	public static final int SPEED = 8;
+
+	private static final int TILE_SIZE = 32;
+	private static final int FUSE = 40;
+	private static final int COUNTDOWN = 5;
+	private static final int VEIL = 50;
+	private static final long MAX_MOVE_STEPS = 10000;
+
+	private static final Map<TileType, Map<Direction, Direction>> REFLECTIONS = new EnumMap<>(TileType.class);
+
+	static {
+		REFLECTIONS.put(TileType.DeflectorTL, reflection(Direction.Left, Direction.Down, Direction.Up, Direction.Right));
+		REFLECTIONS.put(TileType.DeflectorTR, reflection(Direction.Right, Direction.Down, Direction.Up, Direction.Left));
+		REFLECTIONS.put(TileType.DeflectorBR, reflection(Direction.Down, Direction.Left, Direction.Right, Direction.Up));
+		REFLECTIONS.put(TileType.DeflectorBL, reflection(Direction.Left, Direction.Up, Direction.Down, Direction.Right));
+	}
+
+	private final Level level;
+	private final Tile[][] tiles;
+	private final List<Tile> activeTiles;
+	private final Player player;
+	private Direction key;
+	private boolean stepping;
+	private int holes;
+	private int bombs;
+	private int openSensors;
+	private boolean success;
+	private boolean exited;
+	private boolean finished;
+	private int showVeil;
+	private int hideVeil;
+	private long steps;
+	private long exitStep;
+
+	/**
+	 * Creates the simulation for the given level, set up as the browser game sets it up.
+	 * @param aLevel the level to play, must not be {@code null}
+	 */
+	public GameSimulation(final Level aLevel) {
+		level = aLevel;
+		tiles = new Tile[Level.HEIGHT][Level.WIDTH];
+		activeTiles = new ArrayList<>();
+		player = new Player();
+		// the veil is stepped once when created
+		showVeil = VEIL - 1;
+		build();
+	}
+
+	/**
+	 * Plays the given moves and compares every resting position with the one
+	 * the solver expects. A move is started as soon as the player rests and
+	 * no bomb is counting down, as the solver assumes touched bombs to be gone.
+	 * The replay ends with the level, at the first divergence from the solver
+	 * or when the moves are used up.
+	 * @param directions the moves to play, must not be {@code null}
+	 * @return the outcome of the replay, never {@code null}
+	 */
+	public ReplayResult replay(final List<Direction> directions) {
+		StatefulLevel state = new StatefulLevel(level, true);
+		final Position position = new Position(level.playerPosition);
+		final TileType exit = level.exitPosition == Level.NONE ? null : level.at(Level.x(level.exitPosition), Level.y(level.exitPosition));
+		int index = 0;
+		int divergence = -1;
+		String message = null;
+		boolean underway = false;
+		boolean ended = false;
+		int expected = Level.NONE;
+		boolean reachesExit = false;
+		boolean solves = false;
+		long started = 0;
+		while (true) {
+			if (exited && !ended) {
+				ended = true;
+				message = underway ? verify(expected, reachesExit, solves) : "the game ends while the player rests at " + new Position(playerCell());
+				underway = false;
+				if (message != null) {
+					divergence = Math.max(0, index - 1);
+					break;
+				}
+			} else if (!exited && !player.isMoving() && key == null) {
+				if (underway) {
+					underway = false;
+					message = verify(expected, reachesExit, solves);
+					if (message != null) {
+						divergence = index - 1;
+						break;
+					}
+				}
+				if (index == directions.size()) {
+					message = "the moves end at " + new Position(playerCell());
+					break;
+				}
+				if (!bombTicking()) {
+					final Direction direction = directions.get(index++);
+					key = direction;
+					state = state == null ? null : state.move(position, direction);
+					expected = state == null ? Level.NONE : position.get();
+					reachesExit = state != null && expected == level.exitPosition;
+					solves = reachesExit && Solver.isSolved(exit, state);
+					underway = true;
+					started = steps;
+				}
+			}
+			if (!step()) {
+				break;
+			}
+			if (underway && steps - started > MAX_MOVE_STEPS) {
+				divergence = index - 1;
+				message = "the player does not come to rest";
+				break;
+			}
+		}
+		return new ReplayResult(exited && success, exited ? exitStep : steps, index, divergence, message);
+	}
+
+	/**
+	 * Animates one step of the game, as {@code Level.step()} does.
+	 * @return {@code false} once the level is over
+	 */
+	public boolean step() {
+		if (finished) {
+			return false;
+		}
+		steps++;
+		if (showVeil > 0) {
+			showVeil--;
+		} else if (exited && --hideVeil <= 0) {
+			finished = true;
+			return false;
+		}
+		final int x = player.tileX(false);
+		final int y = player.tileY(false);
+		if (isOutOfBounds(x, y)) {
+			exit(false);
+		} else {
+			if (player.isMoving()) {
+				final Tile next = tileAt(player.tileX(true), player.tileY(true));
+				if (next != null) {
+					next.contact();
+				}
+			} else if (tiles[y][x] != null && !tiles[y][x].occupiable()) {
+				exit(false);
+				return true;
+			}
+			if (!success) {
+				player.handleKeys();
+				player.step();
+			}
+		}
+		// tiles added while stepping are stepped from the next step on,
+		// tiles removed before their turn are not stepped any more
+		stepping = true;
+		for (int i = activeTiles.size(); --i >= 0; ) {
+			final Tile tile = activeTiles.get(i);
+			if (tile != null && !tile.step()) {
+				removeActive(tile);
+				tiles[tile.y][tile.x] = null;
+			}
+		}
+		stepping = false;
+		compact();
+		return true;
+	}
+
+	/**
+	 * Presses the key for the given direction; the player picks it up when resting.
+	 * @param direction the direction to move in, must not be {@code null}
+	 */
+	public void press(final Direction direction) {
+		key = direction;
+	}
+
+	/**
+	 * Returns the number of steps played.
+	 * @return the number of steps
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Returns whether the player is moving.
+	 * @return {@code true} if the player is moving
+	 */
+	public boolean isMoving() {
+		return player.isMoving();
+	}
+
+	/**
+	 * Returns whether the player has left the level, by the exit or otherwise.
+	 * @return {@code true} if the level is being left
+	 */
+	public boolean isExited() {
+		return exited;
+	}
+
+	/**
+	 * Returns whether the level was solved.
+	 * @return {@code true} if the player left the level by the exit
+	 */
+	public boolean isSolved() {
+		return success;
+	}
+
+	/**
+	 * Returns the cell the player is on.
+	 * @return the cell index, see {@link Level#cell(int, int)}, or {@link Level#NONE} if outside of the field
+	 */
+	public int playerCell() {
+		final int x = player.tileX(false);
+		final int y = player.tileY(false);
+		return isOutOfBounds(x, y) ? Level.NONE : Level.cell(x, y);
+	}
+
+	private String verify(final int expected, final boolean reachesExit, final boolean solves) {
+		if (exited) {
+			if (reachesExit) {
+				return success == solves ? null : (success ? "the game is solved, but the solver expects it not to be" : "the game is not solved at the exit");
+			}
+			if (expected == Level.NONE) {
+				return success ? "the game is solved, but the solver expects the move to fail" : null;
+			}
+			return "the game ends, but the solver expects the player to rest at " + new Position(expected);
+		}
+		final Position rest = new Position(playerCell());
+		if (expected == Level.NONE) {
+			return "the player rests at " + rest + ", but the solver expects the move to fail";
+		}
+		if (reachesExit) {
+			return "the player rests at " + rest + " instead of leaving by the exit";
+		}
+		return rest.get() == expected ? null : "the player rests at " + rest + " instead of " + new Position(expected);
+	}
+
+	private boolean bombTicking() {
+		for (Tile tile : activeTiles) {
+			if (tile instanceof Bomb && ((Bomb) tile).active) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void exit(final boolean ok) {
+		final boolean result = ok && openSensors == 0;
+		if (!exited) {
+			exited = true;
+			hideVeil = VEIL - 1;
+			exitStep = steps;
+		}
+		success = result;
+	}
+
+	private Tile tileAt(final int x, final int y) {
+		return isOutOfBounds(x, y) ? null : tiles[y][x];
+	}
+
+	private void setTile(final int x, final int y, final Tile newTile) {
+		if (isOutOfBounds(x, y)) {
+			// trap sides outside of the field are never touched
+			return;
+		}
+		Tile tile = newTile;
+		final Tile old = tiles[y][x];
+		if (old instanceof Trap) {
+			if (((Trap) old).side) {
+				final Overlap overlap = new Overlap();
+				overlap.addChild(old);
+				overlap.addChild(tile);
+				tile = overlap;
+			}
+		} else if (old instanceof Overlap) {
+			((Overlap) old).addChild(tile);
+			tile.place(x, y);
+			return;
+		}
+		tiles[y][x] = tile;
+		tile.place(x, y);
+		addActive(tile);
+		removeActive(old);
+	}
+
+	private void removeTile(final int x, final int y, final Tile tile) {
+		final Tile old = tileAt(x, y);
+		if (old == null) {
+			return;
+		}
+		tiles[y][x] = null;
+		if (old instanceof Overlap) {
+			final Tile replace = ((Overlap) old).removeChild(tile);
+			tiles[y][x] = replace != null ? replace : old;
+			return;
+		}
+		removeActive(old);
+	}
+
+	private void addActive(final Tile tile) {
+		tile.slot = activeTiles.size();
+		activeTiles.add(tile);
+		if (tile instanceof Bomb) {
+			bombs++;
+		}
+	}
+
+	/**
+	 * Removes a tile from the active tiles, the last active tile takes its place.
+	 * While stepping, the place is left empty until the step is done.
+	 */
+	private void removeActive(final Tile tile) {
+		if (tile == null || tile.slot < 0) {
+			return;
+		}
+		if (tile instanceof Bomb) {
+			bombs--;
+		}
+		if (stepping) {
+			activeTiles.set(tile.slot, null);
+			holes++;
+		} else {
+			fill(tile.slot);
+		}
+		tile.slot = -1;
+	}
+
+	private void compact() {
+		for (int i = activeTiles.size(); holes > 0 && --i >= 0; ) {
+			if (activeTiles.get(i) == null) {
+				fill(i);
+				holes--;
+			}
+		}
+	}
+
+	private void fill(final int slot) {
+		final Tile last = activeTiles.remove(activeTiles.size() - 1);
+		if (slot < activeTiles.size()) {
+			activeTiles.set(slot, last);
+			last.slot = slot;
+		}
+	}
+
+	private int bombCount() {
+		return bombs;
+	}
+
+	private void build() {
+		Wormhole wormhole = null;
+		for (int y = 0; y < Level.HEIGHT; y++) {
+			for (int x = 0; x < Level.WIDTH; x++) {
+				final TileType type = level.at(x, y);
+				final Tile tile;
+				switch (type) {
+				case Wall:
+					tile = new Wall();
+					break;
+				case Bomb:
+					tile = new Bomb();
+					break;
+				case Portal:
+				case PortalBombless:
+					tile = new Portal(TileType.PortalBombless.equals(type));
+					break;
+				case DeflectorTL:
+				case DeflectorTR:
+				case DeflectorBR:
+				case DeflectorBL:
+					tile = new Deflector(REFLECTIONS.get(type));
+					break;
+				case TrapLR:
+				case TrapTB:
+					tile = new Trap(TileType.TrapLR.equals(type), false);
+					break;
+				case Wormhole:
+					final Wormhole other = new Wormhole();
+					if (wormhole == null) {
+						wormhole = other;
+					} else {
+						wormhole.exit = other;
+						other.exit = wormhole;
+					}
+					tile = other;
+					break;
+				case Sensor:
+					tile = new Sensor();
+					openSensors++;
+					break;
+				case Player:
+					player.place(x, y);
+					tile = null;
+					break;
+				default:
+					tile = null;
+					break;
+				}
+				if (tile != null) {
+					tiles[y][x] = tile;
+					tile.place(x, y);
+					addActive(tile);
+				}
+			}
+		}
+		// tiles replaced while post-processing are still post-processed, as in the game
+		final List<Tile> postProcess = new ArrayList<>();
+		for (Tile[] row : tiles) {
+			for (Tile tile : row) {
+				if (tile instanceof Trap || tile instanceof Sensor) {
+					postProcess.add(tile);
+				}
+			}
+		}
+		postProcess.forEach(Tile::postProcess);
+	}
+
+	private static boolean isOutOfBounds(final int x, final int y) {
+		return x < 0 || x >= Level.WIDTH || y < 0 || y >= Level.HEIGHT;
+	}
+
+	private static Map<Direction, Direction> reflection(final Direction from1, final Direction to1, final Direction from2, final Direction to2) {
+		final Map<Direction, Direction> result = new EnumMap<>(Direction.class);
+		result.put(from1, to1);
+		result.put(from2, to2);
+		return result;
+	}
+
+	private class Player {
+
+		private int x;
+		private int y;
+		private int dx;
+		private int dy;
+		private Direction direction;
+
+		void place(final int tx, final int ty) {
+			x = TILE_SIZE * tx;
+			y = TILE_SIZE * ty;
+		}
+
+		int tileX(final boolean next) {
+			return Math.floorDiv(x, TILE_SIZE) + (next && dx > 0 ? dx : 0);
+		}
+
+		int tileY(final boolean next) {
+			return Math.floorDiv(y, TILE_SIZE) + (next && dy > 0 ? dy : 0);
+		}
+
+		boolean isMoving() {
+			return dx != 0 || dy != 0;
+		}
+
+		void setDirection(final Direction aDirection) {
+			dx = aDirection.getDeltaX();
+			dy = aDirection.getDeltaY();
+			direction = aDirection;
+		}
+
+		void handleKeys() {
+			if (isMoving() || key == null) {
+				return;
+			}
+			setDirection(key);
+			key = null;
+			final Tile neighbour = tileAt(tileX(false) + dx, tileY(false) + dy);
+			if (neighbour != null && !neighbour.occupiable()) {
+				// resting, and there's something in the way
+				dx = 0;
+				dy = 0;
+				neighbour.contact();
+			}
+		}
+
+		void step() {
+			x += SPEED * dx;
+			y += SPEED * dy;
+		}
+
+		void stop(final int tx, final int ty, final boolean onTile) {
+			if (!isMoving()) {
+				return;
+			}
+			if (onTile) {
+				place(tx, ty);
+			} else {
+				place(tx - dx, ty - dy);
+			}
+			dx = 0;
+			dy = 0;
+		}
+
+		boolean near(final Tile tile) {
+			final long distanceX = TILE_SIZE * tile.x - x;
+			final long distanceY = TILE_SIZE * tile.y - y;
+			return distanceX * distanceX + distanceY * distanceY <= SPEED * SPEED;
+		}
+
+	}
+
+	private abstract class Tile {
+
+		protected int x;
+		protected int y;
+		protected int frame = -1;
+		/** the index in the active tiles, -1 if not active */
+		protected int slot = -1;
+
+		boolean step() {
+			frame++;
+			return true;
+		}
+
+		boolean occupiable() {
+			return false;
+		}
+
+		void place(final int tx, final int ty) {
+			x = tx;
+			y = ty;
+		}
+
+		void postProcess() {
+			// nothing to do
+		}
+
+		abstract void contact();
+
+	}
+
+	private class Wall extends Tile {
+
+		@Override
+		void contact() {
+			player.stop(x, y, false);
+		}
+
+	}
+
+	private class Bomb extends Tile {
+
+		private boolean active;
+		private int timer = COUNTDOWN;
+
+		@Override
+		boolean step() {
+			super.step();
+			// the bomb is gone one count after showing zero
+			return !active || frame % FUSE != 0 || --timer >= 0;
+		}
+
+		@Override
+		void contact() {
+			active = true;
+			player.stop(x, y, false);
+		}
+
+	}
+
+	private class Portal extends Tile {
+
+		private final boolean allBombs;
+
+		Portal(final boolean clearAllBombs) {
+			allBombs = clearAllBombs;
+		}
+
+		@Override
+		boolean occupiable() {
+			return true;
+		}
+
+		@Override
+		void contact() {
+			if (player.near(this)) {
+				player.stop(x, y, true);
+				exit(!allBombs || bombCount() == 0);
+			}
+		}
+
+	}
+
+	private class Deflector extends Tile {
+
+		private final Map<Direction, Direction> reflections;
+
+		Deflector(final Map<Direction, Direction> mapping) {
+			reflections = mapping;
+		}
+
+		@Override
+		boolean occupiable() {
+			return true;
+		}
+
+		@Override
+		void contact() {
+			final Direction direction = reflections.get(player.direction);
+			if (direction == null) {
+				player.stop(x, y, false);
+			} else if (player.near(this)) {
+				player.stop(x, y, true);
+				player.setDirection(direction);
+			}
+		}
+
+	}
+
+	private class Trap extends Tile {
+
+		private final boolean vertical;
+		private final boolean side;
+		private int timer;
+		private Trap[] sides;
+
+		/**
+		 * @param verticalSides {@code true} for a trap passed horizontally, with its sides above and below
+		 * @param aSide {@code true} for a side of a trap
+		 */
+		Trap(final boolean verticalSides, final boolean aSide) {
+			vertical = verticalSides;
+			side = aSide;
+		}
+
+		@Override
+		void postProcess() {
+			final Trap left = new Trap(vertical, true);
+			final Trap right = new Trap(vertical, true);
+			sides = new Trap[] { left, right };
+			if (vertical) {
+				setTile(x, y - 1, left);
+				setTile(x, y + 1, right);
+			} else {
+				setTile(x - 1, y, left);
+				setTile(x + 1, y, right);
+			}
+		}
+
+		@Override
+		boolean step() {
+			super.step();
+			if (timer == 0) {
+				return true;
+			}
+			timer--;
+			if (!side) {
+				if (timer == 0) {
+					return false;
+				}
+				if (timer == 1) {
+					// the trap closes
+					setTile(x, y, new Wall());
+					for (Trap trap : sides) {
+						removeTile(trap.x, trap.y, trap);
+					}
+				}
+			}
+			return true;
+		}
+
+		@Override
+		boolean occupiable() {
+			return !side;
+		}
+
+		@Override
+		void contact() {
+			if (side) {
+				player.stop(x, y, false);
+			} else if (sides != null && timer == 0) {
+				for (Trap trap : sides) {
+					trap.timer = SPEED;
+				}
+				timer = SPEED;
+			}
+		}
+
+	}
+
+	private class Wormhole extends Tile {
+
+		private Wormhole exit;
+
+		@Override
+		boolean occupiable() {
+			return true;
+		}
+
+		@Override
+		void contact() {
+			if (exit != null && player.near(this)) {
+				player.place(exit.x, exit.y);
+			}
+		}
+
+	}
+
+	private class Sensor extends Tile {
+
+		private final Set<Direction> sides = EnumSet.allOf(Direction.class);
+
+		@Override
+		void postProcess() {
+			// sides blocked from the start are activated
+			if (x == 0 || tileAt(x - 1, y) != null) {
+				activate(Direction.Right);
+			}
+			if (x == Level.WIDTH - 1 || tileAt(x + 1, y) != null) {
+				activate(Direction.Left);
+			}
+			if (y == 0 || tileAt(x, y - 1) != null) {
+				activate(Direction.Down);
+			}
+			if (y == Level.HEIGHT - 1 || tileAt(x, y + 1) != null) {
+				activate(Direction.Up);
+			}
+		}
+
+		void activate(final Direction side) {
+			if (sides.remove(side) && sides.isEmpty()) {
+				openSensors--;
+			}
+		}
+
+		@Override
+		void contact() {
+			player.stop(x, y, false);
+			activate(player.direction);
+		}
+
+	}
+
+	private class Overlap extends Tile {
+
+		private final List<Tile> children = new ArrayList<>(2);
+
+		void addChild(final Tile tile) {
+			children.add(tile);
+		}
+
+		Tile removeChild(final Tile tile) {
+			children.remove(tile);
+			return children.size() == 1 ? children.get(0) : null;
+		}
+
+		@Override
+		boolean step() {
+			children.forEach(Tile::step);
+			return !children.isEmpty();
+		}
+
+		@Override
+		void place(final int tx, final int ty) {
+			super.place(tx, ty);
+			children.forEach(child -> child.place(tx, ty));
+		}
+
+		@Override
+		void contact() {
+			player.stop(x, y, false);
+		}
+
+	}
+
+}
@@ -0,0 +1,584 @@
+package de.engehausen.boxitus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import de.engehausen.boxitus.Level.TileType;
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * A two-level search for the shortest solution of a level.
+ * <p>
+ * Most moves only relocate the player and leave the level state unchanged. The
+ * inner layer of the search is a breadth-first reachability pass over the resting
+ * cells of one level state, using slide results memoized per state. The outer
+ * layer is a uniform-cost search over the events changing the level state
+ * (a bomb cleared, a trap fired, a sensor activated), so its size depends
+ * on the number of events and not on the number of resting cells.
+ * <p>
+ * The same memoized state graph also backs the enumeration of all solutions
+ * in order of their length, see {@link #solutions(Predicate)}.
+ */
+public class HierarchicalSearch {
+
+	private static final int CELLS = Level.WIDTH * Level.HEIGHT;
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	private final Level root;
+	private final SlideAnalysis analysis;
+	private final Map<StateKey, Layer> layers;
+	private SolverMetrics metrics;
+	private Integer explored;
+	private int reachable;
+
+	/**
+	 * Creates the search for the given level.
+	 * @param level the level to solve, must have a player and an exit position
+	 * @param slideAnalysis the static analysis of the level, must not be {@code null}
+	 */
+	public HierarchicalSearch(final Level level, final SlideAnalysis slideAnalysis) {
+		root = level;
+		analysis = slideAnalysis;
+		layers = new HashMap<>();
+	}
+
+	/**
+	 * Sets the metrics counting the work of the search.
+	 * @param solverMetrics the metrics, may be {@code null}
+	 */
+	public void setMetrics(final SolverMetrics solverMetrics) {
+		metrics = solverMetrics;
+	}
+
+	/**
+	 * Searches the shortest solution.
+	 * @param control a control predicate which can be used to abort the computation,
+	 * must not be {@code null}
+	 * @return the directions of the shortest solution, or {@code null} if there is none
+	 * or the search was aborted
+	 */
+	public List<Direction> search(final Predicate<Void> control) {
+		final PriorityQueue<Node> open = new PriorityQueue<>();
+		final StatefulLevel level = new StatefulLevel(root, true);
+		level.setMetrics(metrics);
+		final Layer start = layer(level);
+		final int startCell = root.playerPosition;
+		start.best[startCell] = 0;
+		open.add(new Node(start, startCell, 0, null, -1, null));
+		while (!open.isEmpty()) {
+			if (!control.test(null)) {
+				return null;
+			}
+			final Node node = open.poll();
+			if (node.layer == null) {
+				return directions(node);
+			}
+			if (node.cost > node.layer.best[node.cell]) {
+				// reached more cheaply in the meantime
+				if (metrics != null) {
+					metrics.duplicate();
+				}
+				continue;
+			}
+			if (metrics != null) {
+				metrics.expanded(node.cost);
+			}
+			final Reach reach = node.layer.reach(node.cell);
+			for (int i = 0; i < reach.count; i++) {
+				final int from = reach.cells[i];
+				final int cost = node.cost + reach.distance[from] + 1;
+				for (int d = 0; d < DIRECTIONS.length; d++) {
+					final Outcome outcome = node.layer.outcome(from, d);
+					if (outcome == Outcome.GOAL) {
+						open.add(new Node(null, -1, cost, node, from, DIRECTIONS[d]));
+					} else if (outcome != Outcome.DEAD && outcome.layer != node.layer) {
+						final Layer next = outcome.layer;
+						if (cost < next.best[outcome.cell]) {
+							next.best[outcome.cell] = cost;
+							open.add(new Node(next, outcome.cell, cost, node, from, DIRECTIONS[d]));
+							if (metrics != null) {
+								metrics.successor();
+							}
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Enumerates the solutions of the level lazily, in non-decreasing order of their
+	 * length. A solution never rests twice on the same cell in the same level state,
+	 * so the enumeration is finite. Solutions are found by an iterative deepening
+	 * search, pruned by the exact distance to the exit of each state graph node.
+	 * The distances are computed when the iterator is created.
+	 * @param control a control predicate which can be used to abort the computation,
+	 * must not be {@code null}; the enumeration ends if it returns {@code false}
+	 * @return the iterator over the solutions, never {@code null}
+	 */
+	public Iterator<List<Direction>> solutions(final Predicate<Void> control) {
+		return new Enumeration(control);
+	}
+
+	/**
+	 * Rates the difficulty of the level by exploring all of its state graph.
+	 * @param control a control predicate which can be used to abort the computation,
+	 * must not be {@code null}
+	 * @return the difficulty, or {@code null} if the computation was aborted
+	 */
+	public Difficulty rate(final Predicate<Void> control) {
+		final Layer start = layer(new StatefulLevel(root, true));
+		final int startCell = root.playerPosition;
+		final int alive = explore(control, start, startCell);
+		if (alive < 0) {
+			return null;
+		}
+		final double deadRatio = 1d - (double) alive / reachable;
+		final int length = start.remaining[startCell];
+		if (length == Integer.MAX_VALUE) {
+			return new Difficulty(0, 0, layers.size(), reachable, deadRatio, 0, 0);
+		}
+		// follow one optimal path, counting the choices which keep the exit reachable
+		int choices = 0;
+		double decisions = 0;
+		Layer layer = start;
+		int cell = startCell;
+		for (int step = 0; step < length; step++) {
+			int options = 0;
+			int optimal = 0;
+			Outcome next = null;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				final Outcome outcome = layer.outcome(cell, d);
+				final int remaining = outcome == Outcome.GOAL ? 0 : outcome == Outcome.DEAD ? Integer.MAX_VALUE : outcome.layer.remaining[outcome.cell];
+				if (remaining != Integer.MAX_VALUE) {
+					options++;
+					if (remaining == layer.remaining[cell] - 1) {
+						optimal++;
+						next = next == null ? outcome : next;
+					}
+				}
+			}
+			choices += options;
+			decisions += Math.log((double) options / optimal) / Math.log(2);
+			if (next != Outcome.GOAL) {
+				layer = next.layer;
+				cell = next.cell;
+			}
+		}
+		return new Difficulty(length, ways(start, startCell), layers.size(), reachable, deadRatio, (double) choices / length, decisions);
+	}
+
+	/**
+	 * Returns the number of distinct level states seen.
+	 * @return the number of distinct level states
+	 */
+	public int getStateCount() {
+		return layers.size();
+	}
+
+	private List<Direction> directions(final Node goal) {
+		final Deque<Direction> result = new ArrayDeque<>();
+		for (Node node = goal; node.parent != null; node = node.parent) {
+			result.addFirst(node.direction);
+			final Reach reach = node.parent.layer.reach(node.parent.cell);
+			for (int cell = node.from; cell != node.parent.cell; cell = reach.predecessor[cell]) {
+				result.addFirst(reach.via[cell]);
+			}
+		}
+		return new ArrayList<>(result);
+	}
+
+	private Layer layer(final StatefulLevel level) {
+		return layers.computeIfAbsent(new StateKey(level), k -> {
+			if (metrics != null) {
+				metrics.visited(layers.size() + 1);
+			}
+			return new Layer(level);
+		});
+	}
+
+	/**
+	 * Explores all nodes reachable from the start and computes their distance
+	 * to the exit.
+	 * This is only done once per search, later calls return the first result.
+	 * @return the number of nodes from which the exit can be reached, or -1 if aborted
+	 */
+	private int explore(final Predicate<Void> control, final Layer start, final int startCell) {
+		if (explored != null) {
+			return explored.intValue();
+		}
+		explored = Integer.valueOf(-1);
+		final List<Layer> layerList = new ArrayList<>();
+		final List<Integer> cellList = new ArrayList<>();
+		start.remaining[startCell] = Integer.MAX_VALUE;
+		layerList.add(start);
+		cellList.add(Integer.valueOf(startCell));
+		for (int i = 0; i < layerList.size(); i++) {
+			if (!control.test(null)) {
+				return -1;
+			}
+			final Layer layer = layerList.get(i);
+			final int cell = cellList.get(i).intValue();
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				final Outcome outcome = layer.outcome(cell, d);
+				if (outcome.layer != null && outcome.layer.remaining[outcome.cell] < 0) {
+					outcome.layer.remaining[outcome.cell] = Integer.MAX_VALUE;
+					layerList.add(outcome.layer);
+					cellList.add(Integer.valueOf(outcome.cell));
+				}
+			}
+		}
+		// relax until stable, the number of sweeps is bounded by the longest distance
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = layerList.size(); --i >= 0; ) {
+				final Layer layer = layerList.get(i);
+				final int cell = cellList.get(i).intValue();
+				for (int d = 0; d < DIRECTIONS.length; d++) {
+					final Outcome outcome = layer.outcome(cell, d);
+					final int distance;
+					if (outcome == Outcome.GOAL) {
+						distance = 1;
+					} else if (outcome == Outcome.DEAD || outcome.layer.remaining[outcome.cell] == Integer.MAX_VALUE) {
+						continue;
+					} else {
+						distance = outcome.layer.remaining[outcome.cell] + 1;
+					}
+					if (distance < layer.remaining[cell]) {
+						layer.remaining[cell] = distance;
+						changed = true;
+					}
+				}
+			}
+		}
+		int result = 0;
+		for (int i = layerList.size(); --i >= 0; ) {
+			if (layerList.get(i).remaining[cellList.get(i).intValue()] != Integer.MAX_VALUE) {
+				result++;
+			}
+		}
+		reachable = layerList.size();
+		explored = Integer.valueOf(result);
+		return result;
+	}
+
+	/**
+	 * Counts the shortest paths from the given node to the exit, saturating
+	 * at {@link Long#MAX_VALUE}. Requires the distances computed by {@link #explore}.
+	 */
+	private long ways(final Layer layer, final int cell) {
+		if (layer.ways == null) {
+			layer.ways = new long[CELLS];
+			Arrays.fill(layer.ways, -1);
+		}
+		if (layer.ways[cell] < 0) {
+			long result = 0;
+			for (int d = 0; d < DIRECTIONS.length; d++) {
+				final Outcome outcome = layer.outcome(cell, d);
+				final long count;
+				if (outcome == Outcome.GOAL) {
+					count = layer.remaining[cell] == 1 ? 1 : 0;
+				} else if (outcome != Outcome.DEAD && outcome.layer.remaining[outcome.cell] == layer.remaining[cell] - 1) {
+					count = ways(outcome.layer, outcome.cell);
+				} else {
+					count = 0;
+				}
+				result = result > Long.MAX_VALUE - count ? Long.MAX_VALUE : result + count;
+			}
+			layer.ways[cell] = result;
+		}
+		return layer.ways[cell];
+	}
+
+	/**
+	 * All that is known about one level state.
+	 */
+	private class Layer {
+
+		private final StatefulLevel level;
+		private final Outcome[] outcomes;
+		private final int[] best;
+		private final int[] remaining;
+		private long[] ways;
+
+		public Layer(final StatefulLevel aLevel) {
+			level = aLevel;
+			outcomes = new Outcome[CELLS * DIRECTIONS.length];
+			best = new int[CELLS];
+			Arrays.fill(best, Integer.MAX_VALUE);
+			// distances to the exit, only computed for the enumeration
+			remaining = new int[CELLS];
+			Arrays.fill(remaining, -1);
+		}
+
+		/**
+		 * Computes the resting cells reachable from the given cell without
+		 * changing the level state.
+		 */
+		public Reach reach(final int start) {
+			final Reach result = new Reach(start);
+			for (int i = 0; i < result.count; i++) {
+				final int from = result.cells[i];
+				for (int d = 0; d < DIRECTIONS.length; d++) {
+					final Outcome outcome = outcome(from, d);
+					if (outcome.layer == this && result.distance[outcome.cell] < 0) {
+						result.add(outcome.cell, result.distance[from] + 1, from, DIRECTIONS[d]);
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the (memoized) result of moving from the given cell
+		 * into the given direction.
+		 */
+		public Outcome outcome(final int from, final int direction) {
+			final int idx = from * DIRECTIONS.length + direction;
+			Outcome result = outcomes[idx];
+			if (result == null) {
+				final Position position = new Position(from);
+				final StatefulLevel next = level.move(position, DIRECTIONS[direction]);
+				if (next == null || analysis.isDead(position.get())) {
+					result = Outcome.DEAD;
+				} else {
+					final TileType tile = next.at(position.getX(), position.getY());
+					if (Solver.isExit(tile)) {
+						result = Solver.isSolved(tile, next) ? Outcome.GOAL : Outcome.DEAD;
+					} else {
+						result = new Outcome(next == level ? this : layer(next), position.get());
+					}
+				}
+				outcomes[idx] = result;
+			}
+			return result;
+		}
+
+	}
+
+	/**
+	 * Iterative deepening enumeration of the simple paths from the start to the exit.
+	 */
+	private class Enumeration implements Iterator<List<Direction>> {
+
+		private final Predicate<Void> control;
+		private final int maxLength;
+		private final Layer[] layerPath;
+		private final int[] cellPath;
+		private final int[] directionPath;
+		private int length;
+		private int depth;
+		private List<Direction> next;
+
+		public Enumeration(final Predicate<Void> aControl) {
+			control = aControl;
+			final Layer start = layer(new StatefulLevel(root, true));
+			final int startCell = root.playerPosition;
+			final int nodes = explore(control, start, startCell);
+			// a simple path cannot be longer than the number of nodes it may use
+			maxLength = nodes < 0 || start.remaining[startCell] == Integer.MAX_VALUE ? -1 : nodes + 1;
+			layerPath = new Layer[Math.max(1, maxLength + 1)];
+			cellPath = new int[layerPath.length];
+			directionPath = new int[layerPath.length];
+			layerPath[0] = start;
+			cellPath[0] = startCell;
+			length = maxLength < 0 ? 0 : start.remaining[startCell];
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				next = advance();
+			}
+			return next != null;
+		}
+
+		@Override
+		public List<Direction> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final List<Direction> result = next;
+			next = null;
+			return result;
+		}
+
+		private List<Direction> advance() {
+			while (length <= maxLength) {
+				if (!control.test(null)) {
+					length = Integer.MAX_VALUE;
+					return null;
+				}
+				if (depth < 0) {
+					// all paths of the current length are known, try longer ones
+					length++;
+					depth = 0;
+					directionPath[0] = 0;
+					continue;
+				}
+				if (directionPath[depth] == DIRECTIONS.length) {
+					depth--;
+					continue;
+				}
+				final int direction = directionPath[depth]++;
+				final Outcome outcome = layerPath[depth].outcome(cellPath[depth], direction);
+				if (outcome == Outcome.GOAL) {
+					if (depth + 1 == length) {
+						return path(direction);
+					}
+				} else if (outcome != Outcome.DEAD &&
+					outcome.layer.remaining[outcome.cell] != Integer.MAX_VALUE &&
+					depth + 1 + outcome.layer.remaining[outcome.cell] <= length &&
+					!onPath(outcome)) {
+					depth++;
+					layerPath[depth] = outcome.layer;
+					cellPath[depth] = outcome.cell;
+					directionPath[depth] = 0;
+				}
+			}
+			return null;
+		}
+
+		private boolean onPath(final Outcome outcome) {
+			for (int i = depth; i >= 0; i--) {
+				if (layerPath[i] == outcome.layer && cellPath[i] == outcome.cell) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private List<Direction> path(final int last) {
+			final List<Direction> result = new ArrayList<>(depth + 1);
+			for (int i = 0; i < depth; i++) {
+				// the direction index was already advanced past the one taken
+				result.add(DIRECTIONS[directionPath[i] - 1]);
+			}
+			result.add(DIRECTIONS[last]);
+			return result;
+		}
+
+	}
+
+	/**
+	 * The result of a move: the resting cell and the level state after the move.
+	 */
+	private static class Outcome {
+
+		/** the move ends the game */
+		private static final Outcome DEAD = new Outcome(null, -1);
+		/** the move solves the level */
+		private static final Outcome GOAL = new Outcome(null, -1);
+
+		private final Layer layer;
+		private final int cell;
+
+		public Outcome(final Layer aLayer, final int aCell) {
+			layer = aLayer;
+			cell = aCell;
+		}
+
+	}
+
+	/**
+	 * Breadth-first reachability result within one level state.
+	 */
+	private static class Reach {
+
+		private final int[] cells;
+		private final int[] distance;
+		private final int[] predecessor;
+		private final Direction[] via;
+		private int count;
+
+		public Reach(final int start) {
+			cells = new int[CELLS];
+			distance = new int[CELLS];
+			predecessor = new int[CELLS];
+			via = new Direction[CELLS];
+			Arrays.fill(distance, -1);
+			add(start, 0, -1, null);
+		}
+
+		public void add(final int cell, final int dist, final int from, final Direction direction) {
+			cells[count++] = cell;
+			distance[cell] = dist;
+			predecessor[cell] = from;
+			via[cell] = direction;
+		}
+
+	}
+
+	/**
+	 * An entry into a level state in the outer search; a node without a
+	 * layer represents a solution.
+	 */
+	private static class Node implements Comparable<Node> {
+
+		private final Layer layer;
+		private final int cell;
+		private final int cost;
+		private final Node parent;
+		private final int from;
+		private final Direction direction;
+
+		public Node(final Layer aLayer, final int aCell, final int aCost, final Node aParent, final int fromCell, final Direction aDirection) {
+			layer = aLayer;
+			cell = aCell;
+			cost = aCost;
+			parent = aParent;
+			from = fromCell;
+			direction = aDirection;
+		}
+
+		@Override
+		public int compareTo(final Node other) {
+			return Integer.compare(cost, other.cost);
+		}
+
+	}
+
+	/**
+	 * Map key identifying equal level states.
+	 */
+	private static class StateKey {
+
+		private final StatefulLevel level;
+		private final int hc;
+
+		public StateKey(final StatefulLevel aLevel) {
+			level = aLevel;
+			final long fingerprint = aLevel.fingerprint();
+			hc = (int) (fingerprint ^ (fingerprint >>> 32));
+		}
+
+		@Override
+		public int hashCode() {
+			return hc;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			return level.sameState(((StateKey) obj).level);
+		}
+
+	}
+
+}
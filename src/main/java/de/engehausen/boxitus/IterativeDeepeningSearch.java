@@ -0,0 +1,149 @@
+package de.engehausen.boxitus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Predicate;
+
+import de.engehausen.boxitus.Level.TileType;
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * An iterative deepening A* search for the shortest solution of a level.
+ * <p>
+ * The distance to the exit in the static slide graph (see {@link SlideAnalysis})
+ * is the lower bound of the remaining moves. Only the level states of the
+ * current path are kept; nodes already visited in an iteration are remembered
+ * in a {@link TranspositionTable} of fixed size, so the memory used does not
+ * depend on the size of the level. Nodes dropped from the table are simply
+ * explored again.
+ */
+public class IterativeDeepeningSearch {
+
+	private static final Direction[] DIRECTIONS = Direction.values();
+	private static final int FOUND = -1;
+	private static final int NONE = Integer.MAX_VALUE;
+
+	private final Level root;
+	private final SlideAnalysis analysis;
+	private final TranspositionTable table;
+	private final Deque<Direction> path;
+	private SolverMetrics metrics;
+	private int iterations;
+	private boolean aborted;
+
+	/**
+	 * Creates the search for the given level.
+	 * @param level the level to solve, must have a player and an exit position
+	 * @param slideAnalysis the static analysis of the level, must not be {@code null}
+	 * @param transpositions the table of visited nodes, must not be {@code null}
+	 */
+	public IterativeDeepeningSearch(final Level level, final SlideAnalysis slideAnalysis, final TranspositionTable transpositions) {
+		root = level;
+		analysis = slideAnalysis;
+		table = transpositions;
+		path = new ArrayDeque<>();
+	}
+
+	/**
+	 * Sets the metrics counting the work of the search.
+	 * @param solverMetrics the metrics, may be {@code null}
+	 */
+	public void setMetrics(final SolverMetrics solverMetrics) {
+		metrics = solverMetrics;
+	}
+
+	/**
+	 * Searches the shortest solution.
+	 * @param control a control predicate which can be used to abort the computation,
+	 * must not be {@code null}
+	 * @return the directions of the shortest solution, or {@code null} if there is none
+	 * or the search was aborted
+	 */
+	public List<Direction> search(final Predicate<Void> control) {
+		final int cell = root.playerPosition;
+		if (analysis.isDead(cell)) {
+			return null;
+		}
+		final StatefulLevel start = new StatefulLevel(root, true);
+		start.setMetrics(metrics);
+		int bound = analysis.distance(cell);
+		while (true) {
+			iterations++;
+			table.nextGeneration();
+			final int result = search(control, start, cell, 0, bound);
+			if (result == FOUND) {
+				return new ArrayList<>(path);
+			}
+			if (result == NONE || aborted) {
+				// nothing was cut off by the bound, all paths have been explored
+				return null;
+			}
+			bound = result;
+		}
+	}
+
+	/**
+	 * Returns the number of iterations started.
+	 * @return the number of iterations
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Searches below the given node.
+	 * @return {@link #FOUND}, or the smallest estimate exceeding the bound
+	 */
+	private int search(final Predicate<Void> control, final StatefulLevel level, final int cell, final int depth, final int bound) {
+		if (!control.test(null)) {
+			aborted = true;
+			return NONE;
+		}
+		final int estimate = depth + analysis.distance(cell);
+		if (estimate > bound) {
+			return estimate;
+		}
+		if (table.visit(level.fingerprint(), cell, depth)) {
+			if (metrics != null) {
+				metrics.duplicate();
+			}
+			return NONE;
+		}
+		if (metrics != null) {
+			metrics.expanded(depth);
+			metrics.visited(table.getUsed());
+		}
+		int result = NONE;
+		for (Direction direction : DIRECTIONS) {
+			final Position position = new Position(cell);
+			final StatefulLevel next = level.move(position, direction);
+			if (next == null || analysis.isDead(position.get())) {
+				continue;
+			}
+			path.addLast(direction);
+			if (metrics != null) {
+				metrics.successor();
+			}
+			final TileType tile = next.at(position.getX(), position.getY());
+			if (Solver.isExit(tile)) {
+				if (Solver.isSolved(tile, next)) {
+					return FOUND;
+				}
+			} else {
+				final int found = search(control, next, position.get(), depth + 1, bound);
+				if (found == FOUND) {
+					return FOUND;
+				}
+				if (aborted) {
+					return NONE;
+				}
+				result = Math.min(result, found);
+			}
+			path.removeLast();
+		}
+		return result;
+	}
+
+}
@@ -1,9 +1,10 @@
 package de.engehausen.boxitus;
 
-import java.awt.Point;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -13,6 +14,10 @@ public class Level {
 
 	public static final int WIDTH = 20;
 	public static final int HEIGHT = 15;
+	/** the number of cells of a level */
+	public static final int CELLS = WIDTH * HEIGHT;
+	/** the cell of a position not set */
+	public static final int NONE = -1;
 
 	enum TileType {
 		Empty(' '),
@@ -32,6 +37,13 @@ public class Level {
 		
 		private final char c;
 		private static final Map<Character, TileType> ALL = new HashMap<>();
+
+		static {
+			// filled up-front, levels may be created concurrently
+			for (TileType type : TileType.values()) {
+				ALL.put(Character.valueOf(type.character()), type);
+			}
+		}
 		
 		TileType(final char c) {
 			this.c = c;
@@ -42,22 +54,16 @@ public class Level {
 		}
 		
 		public static TileType from(final char c) {
-			final Character key = Character.valueOf(c);
-			return ALL.computeIfAbsent(key, n -> {
-				for (TileType candidate : TileType.values()) {
-					if (candidate.character() == c) {
-						return candidate;
-					}
-				}
-				return TileType.Empty;
-			});
+			return ALL.getOrDefault(Character.valueOf(c), TileType.Empty);
 		}
 	}
 
 	private final TileType[][] tiles;
-	protected Point playerPosition;
-	protected Point exitPosition;
-	protected List<Point> wormholes;
+	/** the cell of the player, see {@link #cell(int, int)} */
+	protected int playerPosition;
+	/** the cell of the exit, see {@link #cell(int, int)} */
+	protected int exitPosition;
+	protected int[] wormholes;
 	private final Integer id;
 
 	public Level(final String[] rows) {
@@ -66,11 +72,12 @@ public class Level {
 			for (int x = 0; x < WIDTH; x++) {
 				tiles[y][x] = TileType.from(rows[y].charAt(x));
 				if (TileType.Player.equals(tiles[y][x])) {
-					playerPosition = new Point(x, y);
+					playerPosition = cell(x, y);
 				} else if (TileType.Portal.equals(tiles[y][x]) || TileType.PortalBombless.equals(tiles[y][x])) {
-					exitPosition = new Point(x, y);
+					exitPosition = cell(x, y);
 				} else if (TileType.Wormhole.equals(tiles[y][x])) {
-					wormholes.add(new Point(x, y));
+					wormholes = Arrays.copyOf(wormholes, wormholes.length + 1);
+					wormholes[wormholes.length - 1] = cell(x, y);
 				}
 			}
 		}
@@ -87,7 +94,9 @@ public class Level {
 
 	public Level() {
 		tiles = new TileType[HEIGHT][WIDTH];
-		wormholes = new ArrayList<>(2);
+		playerPosition = NONE;
+		exitPosition = NONE;
+		wormholes = new int[0];
 		id = UNIQUE_COUNTER.incrementAndGet();
 	}
 
@@ -113,39 +122,92 @@ public class Level {
 			// space needed left/right of tile!
 			return;
 		}
+		final int cell = cell(x, y);
 		if (TileType.Player.equals(tile)) {
-			if (playerPosition != null) {
-				tiles[playerPosition.y][playerPosition.x] = TileType.Empty;
+			if (playerPosition != NONE) {
+				tiles[y(playerPosition)][x(playerPosition)] = TileType.Empty;
 			}
-			playerPosition = new Point(x, y);
+			playerPosition = cell;
 		} else if (TileType.Portal.equals(tile) || TileType.PortalBombless.equals(tile)) {
-			if (exitPosition != null) {
-				tiles[exitPosition.y][exitPosition.x] = TileType.Empty;
+			if (exitPosition != NONE) {
+				tiles[y(exitPosition)][x(exitPosition)] = TileType.Empty;
 			}
-			exitPosition = new Point(x, y);
+			exitPosition = cell;
 		} else if (TileType.Wormhole.equals(tile)) {
-			final Point point = new Point(x, y);
-			if (wormholes.size() == 2) {
-				final Point old = wormholes.remove(1);
-				tiles[old.y][old.x] = TileType.Empty;
+			if (wormholes.length == 2) {
+				final int old = wormholes[1];
+				wormholes = Arrays.copyOf(wormholes, 1);
+				tiles[y(old)][x(old)] = TileType.Empty;
 			}
-			if (!wormholes.contains(point)) {
-				wormholes.add(point);
+			if (indexOfWormhole(cell) < 0) {
+				wormholes = Arrays.copyOf(wormholes, wormholes.length + 1);
+				wormholes[wormholes.length - 1] = cell;
 			}
 		} else {
-			final Point point = new Point(x, y);
-			if (point.equals(playerPosition)) {
-				playerPosition = null;
-			} else if (point.equals(exitPosition)) {
-				exitPosition = null;
+			if (cell == playerPosition) {
+				playerPosition = NONE;
+			} else if (cell == exitPosition) {
+				exitPosition = NONE;
 			}
 			if (TileType.Wormhole.equals(tiles[y][x])) {
-				wormholes.remove(point);
+				final int idx = indexOfWormhole(cell);
+				if (idx >= 0) {
+					final int[] remaining = new int[wormholes.length - 1];
+					System.arraycopy(wormholes, 0, remaining, 0, idx);
+					System.arraycopy(wormholes, idx + 1, remaining, idx, remaining.length - idx);
+					wormholes = remaining;
+				}
 			}
 		}
 		tiles[y][x] = tile;
 	}
 
+	/**
+	 * Returns the wormhole the given wormhole leads to.
+	 * @param cell the cell of a wormhole
+	 * @return the cell of the other wormhole
+	 */
+	public int otherWormhole(final int cell) {
+		return wormholes[(1 + indexOfWormhole(cell)) % wormholes.length];
+	}
+
+	/**
+	 * Packs the given coordinates into a cell index.
+	 * @param x the x coordinate, between 0 and {@link #WIDTH}
+	 * @param y the y coordinate, between 0 and {@link #HEIGHT}
+	 * @return the cell index, between 0 and {@link #CELLS}
+	 */
+	public static int cell(final int x, final int y) {
+		return y * WIDTH + x;
+	}
+
+	/**
+	 * Returns the x coordinate of the given cell.
+	 * @param cell the cell index
+	 * @return the x coordinate
+	 */
+	public static int x(final int cell) {
+		return cell % WIDTH;
+	}
+
+	/**
+	 * Returns the y coordinate of the given cell.
+	 * @param cell the cell index
+	 * @return the y coordinate
+	 */
+	public static int y(final int cell) {
+		return cell / WIDTH;
+	}
+
+	private int indexOfWormhole(final int cell) {
+		for (int i = 0; i < wormholes.length; i++) {
+			if (wormholes[i] == cell) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
 	public String[] toStringArray() {
 		final String[] result = new String[HEIGHT];
 		final StringBuilder sb = new StringBuilder(WIDTH);
@@ -159,6 +221,28 @@ public class Level {
 		return result;
 	}
 
+	/**
+	 * Returns a hash of the level contents. Levels with the same tiles
+	 * have the same hash, regardless of how their rows were written.
+	 * @return the SHA-256 hash of the level rows in hexadecimal notation, never {@code null}
+	 */
+	public String contentHash() {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String row : toStringArray()) {
+				digest.update(row.getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) '\n');
+			}
+			final StringBuilder sb = new StringBuilder(64);
+			for (byte b : digest.digest()) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
 	@Override
 	public String toString() {
 		final StringBuilder sb = new StringBuilder(HEIGHT * (WIDTH + 2));
@@ -0,0 +1,261 @@
+package de.engehausen.boxitus;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.engehausen.boxitus.Level.TileType;
+
+/**
+ * Generates levels from random seeds and keeps those which pass verification:
+ * the level must be solvable, its shortest solution must be within a length range
+ * and its {@link Difficulty#getScore() difficulty score} must reach a minimum.
+ * <p>
+ * Worker threads propose and verify levels for consecutive seeds; the calling
+ * thread collects the accepted levels and appends them to the catalog, so the
+ * catalog is only ever modified by one thread. A proposal only depends on its seed,
+ * so any accepted level can be recreated with {@link #propose(long)}.
+ */
+public class LevelGenerator {
+
+	private static final TileType[] DEFLECTORS = {
+		TileType.DeflectorTL, TileType.DeflectorTR, TileType.DeflectorBR, TileType.DeflectorBL
+	};
+
+	private final Levels levels;
+	private final int threads;
+	private final int minLength;
+	private final int maxLength;
+	private final double minScore;
+	private final long maxSteps;
+	private final AtomicLong proposed;
+
+	/**
+	 * Creates the generator.
+	 * @param catalog the levels to append the accepted levels to, must not be {@code null}
+	 * @param threadCount the number of levels to verify in parallel
+	 * @param shortest the minimum length of the shortest solution
+	 * @param longest the maximum length of the shortest solution
+	 * @param score the minimum difficulty score
+	 * @param steps the maximum number of level states to explore when verifying a proposal,
+	 * zero or less for no limit
+	 */
+	public LevelGenerator(final Levels catalog, final int threadCount, final int shortest, final int longest, final double score, final long steps) {
+		levels = catalog;
+		threads = Math.max(1, threadCount);
+		minLength = shortest;
+		maxLength = longest;
+		minScore = score;
+		maxSteps = steps;
+		proposed = new AtomicLong();
+	}
+
+	/**
+	 * Generates levels until the given number of levels was accepted or the time is up.
+	 * Levels which are already part of the catalog are not accepted again.
+	 * @param firstSeed the seed of the first proposal, the following proposals use the following seeds
+	 * @param count the number of levels to generate
+	 * @param millis the time limit in milliseconds, zero or less for no limit
+	 * @return the codes of the levels appended to the catalog, never {@code null}
+	 * @throws InterruptedException if interrupted while waiting for the workers
+	 * @throws IllegalStateException if proposing or verifying a level failed
+	 */
+	public List<String> generate(final long firstSeed, final int count, final long millis) throws InterruptedException {
+		final Set<String> known = new HashSet<>();
+		for (int i = 0; i < levels.getSize(); i++) {
+			known.add(levels.getElementAt(i).contentHash());
+		}
+		final AtomicLong seeds = new AtomicLong(firstSeed);
+		final BlockingQueue<Level> accepted = new ArrayBlockingQueue<>(4 * threads);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<String> codes = new ArrayList<>(count);
+		final AtomicInteger workers = new AtomicInteger(threads);
+		final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		try {
+			for (int i = 0; i < threads; i++) {
+				executor.execute(() -> {
+					long seed = firstSeed;
+					try {
+						while (!Thread.currentThread().isInterrupted()) {
+							seed = seeds.getAndIncrement();
+							final Level level = propose(seed);
+							proposed.incrementAndGet();
+							if (verify(level) != null) {
+								accepted.put(level);
+							}
+						}
+					} catch (InterruptedException e) {
+						// generation is complete
+					} catch (RuntimeException e) {
+						// a bug, generation fails with it
+						failure.compareAndSet(null, new IllegalStateException("proposal of seed " + seed + " failed", e));
+					} finally {
+						workers.decrementAndGet();
+					}
+				});
+			}
+			final long deadline = millis > 0 ? System.currentTimeMillis() + millis : Long.MAX_VALUE;
+			// a worker puts its levels before it ends, so the queue is checked last
+			while (codes.size() < count && failure.get() == null && (workers.get() > 0 || !accepted.isEmpty())) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					break;
+				}
+				final Level level = accepted.poll(Math.min(remaining, 1000), TimeUnit.MILLISECONDS);
+				if (level != null && known.add(level.contentHash())) {
+					codes.add(levels.addLevel(level));
+				}
+			}
+			if (failure.get() != null) {
+				throw failure.get();
+			}
+			return codes;
+		} finally {
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	/**
+	 * Returns the number of levels proposed so far.
+	 * @return the number of proposals
+	 */
+	public long getProposed() {
+		return proposed.get();
+	}
+
+	/**
+	 * Proposes a level for the given seed: scattered walls and deflectors, a few
+	 * bombs and traps, sometimes a pair of wormholes or a sensor, and the player
+	 * and exit on free cells. The same seed always yields the same level.
+	 * @param seed the seed of the proposal
+	 * @return the level proposed, never {@code null}
+	 */
+	protected Level propose(final long seed) {
+		final Random random = new Random(seed);
+		final Level level = new Level();
+		final double walls = 0.08 + 0.1 * random.nextDouble();
+		final double deflectors = 0.04 * random.nextDouble();
+		for (int y = 0; y < Level.HEIGHT; y++) {
+			for (int x = 0; x < Level.WIDTH; x++) {
+				final double r = random.nextDouble();
+				if (r < walls) {
+					level.set(TileType.Wall, x, y);
+				} else if (r < walls + deflectors) {
+					level.set(DEFLECTORS[random.nextInt(DEFLECTORS.length)], x, y);
+				}
+			}
+		}
+		final int bombs = random.nextInt(4);
+		for (int i = 0; i < bombs; i++) {
+			place(random, level, TileType.Bomb, 0);
+		}
+		for (int i = random.nextInt(3); i > 0; i--) {
+			// a trap on the border would be crossed into the void
+			place(random, level, random.nextBoolean() ? TileType.TrapLR : TileType.TrapTB, 1);
+		}
+		if (random.nextInt(4) == 0) {
+			place(random, level, TileType.Wormhole, 0);
+			place(random, level, TileType.Wormhole, 0);
+		}
+		if (random.nextInt(8) == 0) {
+			place(random, level, TileType.Sensor, 0);
+		}
+		place(random, level, TileType.Player, 0);
+		place(random, level, bombs > 0 && random.nextBoolean() ? TileType.PortalBombless : TileType.Portal, 0);
+		return level;
+	}
+
+	/**
+	 * Verifies a proposed level.
+	 * @param level the level to verify, must not be {@code null}
+	 * @return the difficulty of the level, or {@code null} if the level is not accepted
+	 */
+	protected Difficulty verify(final Level level) {
+		final SlideAnalysis analysis = new SlideAnalysis(level);
+		final int start = level.playerPosition;
+		// the static distance is a lower bound of the solution length
+		if (analysis.isDead(start) || analysis.distance(start) > maxLength) {
+			return null;
+		}
+		final SolveBudget budget = new SolveBudget(0, maxSteps, 0, ignore -> !Thread.currentThread().isInterrupted());
+		final Difficulty difficulty = new HierarchicalSearch(level, analysis).rate(budget);
+		if (difficulty == null ||
+			!difficulty.isSolvable() ||
+			difficulty.getLength() < minLength ||
+			difficulty.getLength() > maxLength ||
+			difficulty.getScore() < minScore) {
+			return null;
+		}
+		return difficulty;
+	}
+
+	private static void place(final Random random, final Level level, final TileType tile, final int margin) {
+		while (true) {
+			final int x = margin + random.nextInt(Level.WIDTH - 2 * margin);
+			final int y = margin + random.nextInt(Level.HEIGHT - 2 * margin);
+			if (TileType.Empty.equals(level.at(x, y))) {
+				level.set(tile, x, y);
+				return;
+			}
+		}
+	}
+
+	public static void main(final String... args) throws IOException, InterruptedException {
+		final CommandLine commandLine = new CommandLine(LevelGenerator.class, false)
+			.option("--levels", "<file>", "the level catalog to append to (default: an empty catalog)")
+			.option("--out", "<file>", "the file to write the catalog to (default: the --levels file, or standard output)")
+			.option("--count", "<n>", "the number of levels to generate (default: 10)")
+			.option("--time", "<seconds>", "stop after this time even if fewer levels were found (default: unlimited)")
+			.option("--seed", "<n>", "the first seed to propose levels from (default: random)")
+			.option("--threads", "<n>", "the number of levels to verify in parallel (default: number of cores)")
+			.option("--min-length", "<n>", "the minimum length of the shortest solution (default: 8)")
+			.option("--max-length", "<n>", "the maximum length of the shortest solution (default: 30)")
+			.option("--min-score", "<n>", "the minimum difficulty score (default: 0)")
+			.option("--steps", "<n>", "the maximum number of level states to explore per proposal (default: 100000)");
+		if (!commandLine.parse(args)) {
+			return;
+		}
+		final File levelFile = commandLine.getFile("--levels");
+		final File out = commandLine.get("--out", File::new, levelFile);
+		final int count = commandLine.getInt("--count", 10);
+		final long time = 1000L * commandLine.getLong("--time", 0);
+		final long seed = commandLine.getLong("--seed", new Random().nextLong());
+		final int threads = commandLine.getInt("--threads", Runtime.getRuntime().availableProcessors());
+		final int minLength = commandLine.getInt("--min-length", 8);
+		final int maxLength = commandLine.getInt("--max-length", 30);
+		final double minScore = commandLine.getDouble("--min-score", 0);
+		final long steps = commandLine.getLong("--steps", 100000);
+		final Levels levels = levelFile != null && levelFile.exists() ? Levels.load(levelFile) : new Levels();
+		final long start = System.currentTimeMillis();
+		final LevelGenerator generator = new LevelGenerator(levels, threads, minLength, maxLength, minScore, steps);
+		final List<String> codes = generator.generate(seed, count, time);
+		final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		System.err.println(String.format(
+			"%d of %d proposals accepted from seed %d (%dms, %d levels per hour)",
+			codes.size(), generator.getProposed(), seed, elapsed, 3600000L * codes.size() / elapsed
+		));
+		if (out == null) {
+			Levels.save(levels, System.out);
+		} else {
+			try (final OutputStream stream = new FileOutputStream(out)) {
+				Levels.save(levels, stream);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,304 @@
+package de.engehausen.boxitus;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import de.engehausen.boxitus.Level.TileType;
+
+/**
+ * Makes levels harder by local mutations: walls and deflectors are added, moved,
+ * turned or removed, walls and bombs are flipped and traps are inserted.
+ * A mutation is kept if the level stays solvable and its shortest solution
+ * gets longer, or as long but with more reachable level states.
+ * <p>
+ * Each round proposes a number of mutations of the current level and rates them
+ * in parallel; the hardest one is kept. The proposals only depend on the seed and
+ * the ratings on the step budget, so a run can be repeated with any number of threads.
+ * Ratings are shared between rounds and levels by the content of the level,
+ * so a board reached again is not rated again.
+ */
+public class LevelHardener {
+
+	private static final TileType[] DEFLECTORS = {
+		TileType.DeflectorTL, TileType.DeflectorTR, TileType.DeflectorBR, TileType.DeflectorBL
+	};
+
+	private static final Difficulty UNRATED = new Difficulty(0, 0, 0, 0, 0, 0, 0);
+
+	private final int threads;
+	private final int candidates;
+	private final long maxSteps;
+	private final ConcurrentHashMap<String, Difficulty> ratings;
+	private final AtomicLong evaluated;
+
+	/**
+	 * Creates the hardener.
+	 * @param threadCount the number of mutations to rate in parallel
+	 * @param candidateCount the number of mutations to propose per round
+	 * @param steps the maximum number of level states to explore when rating a mutation,
+	 * zero or less for no limit
+	 */
+	public LevelHardener(final int threadCount, final int candidateCount, final long steps) {
+		threads = Math.max(1, threadCount);
+		candidates = Math.max(1, candidateCount);
+		maxSteps = steps;
+		ratings = new ConcurrentHashMap<>();
+		evaluated = new AtomicLong();
+	}
+
+	/**
+	 * Hardens the given level.
+	 * @param level the level to harden, must not be {@code null}
+	 * @param seed the seed of the mutations
+	 * @param rounds the number of rounds of mutations
+	 * @param millis the time limit in milliseconds, zero or less for no limit
+	 * @return the hardest level found, the given level if it cannot be solved or no mutation made it harder
+	 * @throws InterruptedException if interrupted while waiting for the ratings
+	 */
+	public Level harden(final Level level, final long seed, final int rounds, final long millis) throws InterruptedException {
+		final long deadline = millis > 0 ? System.currentTimeMillis() + millis : Long.MAX_VALUE;
+		final Predicate<Void> control = ignore -> !Thread.currentThread().isInterrupted() && System.currentTimeMillis() < deadline;
+		Level current = level;
+		Difficulty difficulty = rate(level, control);
+		if (difficulty == null || !difficulty.isSolvable()) {
+			return level;
+		}
+		final Random random = new Random(seed);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int round = 0; round < rounds && System.currentTimeMillis() < deadline; round++) {
+				final List<Level> proposals = new ArrayList<>(candidates);
+				final List<Callable<Difficulty>> tasks = new ArrayList<>(candidates);
+				for (int i = 0; i < candidates; i++) {
+					final Level proposal = mutate(random, current);
+					proposals.add(proposal);
+					tasks.add(() -> rate(proposal, control));
+				}
+				final List<Future<Difficulty>> futures = executor.invokeAll(tasks);
+				for (int i = 0; i < futures.size(); i++) {
+					final Difficulty rating;
+					try {
+						rating = futures.get(i).get();
+					} catch (ExecutionException e) {
+						throw new IllegalStateException(e.getCause());
+					}
+					// the first of equally hard proposals wins, independent of the thread timing
+					if (rating != null && harder(rating, difficulty)) {
+						current = proposals.get(i);
+						difficulty = rating;
+					}
+				}
+			}
+			return current;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the number of levels rated so far, not counting those rated before.
+	 * @return the number of ratings
+	 */
+	public long getEvaluated() {
+		return evaluated.get();
+	}
+
+	/**
+	 * Proposes a mutation of the given level. The player, the exit, wormholes and
+	 * sensors are not changed.
+	 * @param random the source of randomness, must not be {@code null}
+	 * @param level the level to mutate, must not be {@code null}
+	 * @return the mutated level, never {@code null}
+	 */
+	protected Level mutate(final Random random, final Level level) {
+		final Level result = new Level(level);
+		while (true) {
+			final int x = random.nextInt(Level.WIDTH);
+			final int y = random.nextInt(Level.HEIGHT);
+			final TileType tile = result.at(x, y);
+			switch (tile) {
+			case Empty:
+				switch (random.nextInt(4)) {
+				case 0:
+					result.set(DEFLECTORS[random.nextInt(DEFLECTORS.length)], x, y);
+					break;
+				case 1:
+					if (!insertTrap(random, result, x, y)) {
+						continue;
+					}
+					break;
+				default:
+					result.set(TileType.Wall, x, y);
+					break;
+				}
+				return result;
+			case Wall:
+				switch (random.nextInt(3)) {
+				case 0:
+					result.set(TileType.Empty, x, y);
+					break;
+				case 1:
+					result.set(TileType.Bomb, x, y);
+					break;
+				default:
+					if (!moveTile(random, result, x, y)) {
+						continue;
+					}
+					break;
+				}
+				return result;
+			case Bomb:
+				result.set(random.nextBoolean() ? TileType.Wall : TileType.Empty, x, y);
+				return result;
+			case DeflectorTL:
+			case DeflectorTR:
+			case DeflectorBR:
+			case DeflectorBL:
+				if (random.nextBoolean()) {
+					result.set(DEFLECTORS[(tile.ordinal() - TileType.DeflectorTL.ordinal() + 1 + random.nextInt(3)) % DEFLECTORS.length], x, y);
+				} else if (!moveTile(random, result, x, y)) {
+					continue;
+				}
+				return result;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Rates a level, reusing the rating of a level with the same content.
+	 * @param level the level to rate, must not be {@code null}
+	 * @param control the control to abort rating with, must not be {@code null}
+	 * @return the difficulty, or {@code null} if rating was aborted or the level is hopeless
+	 */
+	protected Difficulty rate(final Level level, final Predicate<Void> control) {
+		final String key = level.contentHash();
+		final Difficulty known = ratings.get(key);
+		if (known != null) {
+			return known == UNRATED ? null : known;
+		}
+		final SlideAnalysis analysis = new SlideAnalysis(level);
+		final Difficulty result;
+		if (analysis.isDead(level.playerPosition)) {
+			result = UNRATED;
+		} else {
+			final Difficulty rating = new HierarchicalSearch(level, analysis).rate(new SolveBudget(0, maxSteps, 0, control));
+			if (rating == null) {
+				// aborted, may be rated with more budget later
+				return null;
+			}
+			result = rating;
+		}
+		evaluated.incrementAndGet();
+		ratings.putIfAbsent(key, result);
+		return result == UNRATED ? null : result;
+	}
+
+	/**
+	 * Checks if a solvable difficulty is harder than another.
+	 * @param candidate the difficulty to check, must not be {@code null}
+	 * @param current the difficulty to beat, must not be {@code null}
+	 * @return {@code true} if the shortest solution is longer, or as long with more level states
+	 */
+	static boolean harder(final Difficulty candidate, final Difficulty current) {
+		if (!candidate.isSolvable()) {
+			return false;
+		}
+		if (candidate.getLength() != current.getLength()) {
+			return candidate.getLength() > current.getLength();
+		}
+		return candidate.getStates() > current.getStates();
+	}
+
+	private static boolean insertTrap(final Random random, final Level level, final int x, final int y) {
+		final boolean horizontal = random.nextBoolean();
+		// the sides of the trap need free cells, traps on the border lead into the void
+		if (x == 0 || y == 0 || x == Level.WIDTH - 1 || y == Level.HEIGHT - 1) {
+			return false;
+		}
+		final boolean free = horizontal
+			? TileType.Empty.equals(level.at(x, y - 1)) && TileType.Empty.equals(level.at(x, y + 1))
+			: TileType.Empty.equals(level.at(x - 1, y)) && TileType.Empty.equals(level.at(x + 1, y));
+		if (!free) {
+			return false;
+		}
+		level.set(horizontal ? TileType.TrapLR : TileType.TrapTB, x, y);
+		return true;
+	}
+
+	private static boolean moveTile(final Random random, final Level level, final int x, final int y) {
+		final Solver.Move.Direction direction = Solver.Move.Direction.asList().get(random.nextInt(4));
+		final int nx = x + direction.getDeltaX();
+		final int ny = y + direction.getDeltaY();
+		if (nx < 0 || ny < 0 || nx >= Level.WIDTH || ny >= Level.HEIGHT || !TileType.Empty.equals(level.at(nx, ny))) {
+			return false;
+		}
+		level.set(level.at(x, y), nx, ny);
+		level.set(TileType.Empty, x, y);
+		return true;
+	}
+
+	public static void main(final String... args) throws IOException, InterruptedException {
+		final CommandLine commandLine = new CommandLine(LevelHardener.class, true)
+			.option("--levels", "<file>", "the level catalog (default: the built-in levels.json)")
+			.option("--out", "<file>", "the file to write the hardened catalog to (default: standard output)")
+			.option("--rounds", "<n>", "the number of rounds of mutations per level (default: 50)")
+			.option("--candidates", "<n>", "the number of mutations proposed per round (default: 4 per thread)")
+			.option("--time", "<seconds>", "the time limit per level (default: unlimited)")
+			.option("--steps", "<n>", "the maximum number of level states to explore per rating (default: 200000)")
+			.option("--seed", "<n>", "the seed of the mutations (default: 0)")
+			.option("--threads", "<n>", "the number of mutations to rate in parallel (default: number of cores)")
+			.note("Without codes all levels of the catalog are hardened.");
+		if (!commandLine.parse(args)) {
+			return;
+		}
+		final File out = commandLine.getFile("--out");
+		final int rounds = commandLine.getInt("--rounds", 50);
+		final int candidates = commandLine.getInt("--candidates", 0);
+		final long time = 1000L * commandLine.getLong("--time", 0);
+		final long steps = commandLine.getLong("--steps", 200000);
+		final long seed = commandLine.getLong("--seed", 0);
+		final int threads = commandLine.getInt("--threads", Runtime.getRuntime().availableProcessors());
+		final Levels levels = commandLine.load(commandLine.getFile("--levels"));
+		final List<String> codes = commandLine.getCodes();
+		final LevelHardener hardener = new LevelHardener(threads, candidates > 0 ? candidates : 4 * threads, steps);
+		final Predicate<Void> unlimited = ignore -> true;
+		for (String code : codes.isEmpty() ? new ArrayList<>(levels.index) : codes) {
+			final long start = System.currentTimeMillis();
+			final Level level = levels.require(code);
+			final Level hardened = hardener.harden(level, seed, rounds, time);
+			if (hardened == level) {
+				System.err.println(code + ": unchanged (" + (System.currentTimeMillis() - start) + "ms)");
+			} else {
+				levels.setLevel(code, hardened);
+				System.err.println(String.format(
+					"%s: %s -> %s (%dms)",
+					code, hardener.rate(level, unlimited), hardener.rate(hardened, unlimited), System.currentTimeMillis() - start
+				));
+			}
+		}
+		System.err.println(hardener.getEvaluated() + " levels rated");
+		if (out == null) {
+			Levels.save(levels, System.out);
+		} else {
+			try (final OutputStream stream = new FileOutputStream(out)) {
+				Levels.save(levels, stream);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+package de.engehausen.boxitus;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+import javax.swing.ListModel;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+/**
+ * List model of a level catalog for the editor. Changes to the catalog
+ * must be made through this model to notify the listeners.
+ */
+public class LevelListModel implements ListModel<Level> {
+
+	private static final int WIDTH = 4 + Level.WIDTH * Level.HEIGHT;
+
+	private final Levels levels;
+	private final List<ListDataListener> listeners;
+
+	/**
+	 * Creates the model.
+	 * @param catalog the levels to show, must not be {@code null}
+	 */
+	public LevelListModel(final Levels catalog) {
+		levels = catalog;
+		listeners = new ArrayList<>(2);
+	}
+
+	/**
+	 * Returns the level catalog shown.
+	 * @return the levels, never {@code null}
+	 */
+	public Levels getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Returns all known levels as a PNG. This is used
+	 * as a cheap compression method and is being read again
+	 * in {@code src/Levels.ts}
+	 * @return the data URI for the level information, never {@code null}
+	 */
+	public String asDataURL() {
+		final int max = levels.getSize();
+		final BufferedImage buffer = new BufferedImage(WIDTH, max, BufferedImage.TYPE_3BYTE_BGR);
+		final WritableRaster raster = buffer.getRaster();
+		for (int y = 0; y < max; y++) {
+			raster.setPixels(0, y, WIDTH, 1, asPixels(y));
+		}
+		try (final ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+			ImageIO.write(buffer, "png", baos);
+			return "data:image/png;base64," + Base64.getEncoder().encodeToString(baos.toByteArray());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Adds the given level, creating a unique code for it.
+	 * @param level the level to add, must not be {@code null}
+	 */
+	public void addLevel(final Level level) {
+		levels.addLevel(level);
+		final ListDataEvent event = new ListDataEvent(this, ListDataEvent.INTERVAL_ADDED, levels.getSize() - 1, levels.getSize());
+		listeners.stream().forEach( l -> l.intervalAdded(event) );
+	}
+
+	/**
+	 * Sets the level for the given code.
+	 * @param code the code to use, must be an already existing code
+	 * @param level the level to set for this code
+	 */
+	public void setLevel(final String code, final Level level) {
+		final int idx = levels.setLevel(code, level);
+		if (idx >= 0) {
+			final ListDataEvent event = new ListDataEvent(this, ListDataEvent.CONTENTS_CHANGED, idx, idx);
+			listeners.stream().forEach( l -> l.contentsChanged(event) );
+		}
+	}
+
+	/**
+	 * Removes a level by index
+	 * @param idx the index of the level to remove
+	 */
+	public void removeLevel(final int idx) {
+		if (levels.removeLevel(levels.getCode(idx)) >= 0) {
+			final ListDataEvent event = new ListDataEvent(this, ListDataEvent.INTERVAL_REMOVED, idx, idx);
+			listeners.stream().forEach( l -> l.intervalRemoved(event) );
+		}
+	}
+
+	/**
+	 * Returns the code for the given index.
+	 * @param idx the index to use
+	 * @return the code at the given index
+	 */
+	public String getCode(final int idx) {
+		return levels.getCode(idx);
+	}
+
+	/**
+	 * Switches the levels for the two given positions.
+	 * @param from the first position
+	 * @param to the second position
+	 */
+	public void swap(final int from, final int to) {
+		levels.swap(from, to);
+		final ListDataEvent event = new ListDataEvent(this, ListDataEvent.CONTENTS_CHANGED, from, to);
+		listeners.stream().forEach( l -> l.contentsChanged(event) );
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSize() {
+		return levels.getSize();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Level getElementAt(final int idx) {
+		return levels.getElementAt(idx);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addListDataListener(final ListDataListener l) {
+		listeners.add(l);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeListDataListener(final ListDataListener l) {
+		listeners.remove(l);
+	}
+
+	private int[] asPixels(final int idx) {
+		final int[] pixels = new int[3 * WIDTH];
+		int i = asPixels(pixels, levels.getCode(idx), 0);
+		final Level level = levels.getElementAt(idx);
+		for (final String row : level.toStringArray()) {
+			i = asPixels(pixels, row, i);
+		}
+		return pixels;
+	}
+
+	private int asPixels(final int pixels[], final String raw, final int offset) {
+		final int size = raw.length();
+		for (int i = 0; i < size; i++) {
+			final int v = raw.charAt(i);
+			pixels[offset + 3 * i] = v;
+			pixels[1 + offset + 3 * i] = v;
+			pixels[2 + offset + 3 * i] = v;
+		}
+		return offset + 3 * size;
+	}
+
+}
@@ -0,0 +1,256 @@
+package de.engehausen.boxitus;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.engehausen.boxitus.Level.TileType;
+
+/**
+ * Strips tiles from a level which are not needed for its shortest solution,
+ * as long as the level stays solvable with a shortest solution of the same length:
+ * walls, traps and wormholes are removed (both wormholes of a pair at once),
+ * bombs, sensors and deflectors are removed or, if that changes the length,
+ * replaced by a wall, and a bombless exit becomes a normal exit.
+ * <p>
+ * All simplifications of a level are checked in parallel. Those which keep the
+ * length are then applied one after another, each checked again as they may
+ * depend on each other, until no tile can be simplified any more. The tiles left
+ * which cannot be simplified are load-bearing.
+ */
+public class LevelMinimizer {
+
+	private final int threads;
+	private final long maxSteps;
+
+	/**
+	 * Creates the minimizer.
+	 * @param threadCount the number of simplifications to check in parallel
+	 * @param steps the maximum number of level states to explore per check, zero or less for no limit;
+	 * a simplification which cannot be checked within this budget is not applied
+	 */
+	public LevelMinimizer(final int threadCount, final long steps) {
+		threads = Math.max(1, threadCount);
+		maxSteps = steps;
+	}
+
+	/**
+	 * Minimizes the given level.
+	 * @param level the level to minimize, must not be {@code null}
+	 * @return the minimized level, the given level if it cannot be solved or nothing can be simplified
+	 * @throws InterruptedException if interrupted while waiting for the checks
+	 */
+	public Level minimize(final Level level) throws InterruptedException {
+		final Difficulty difficulty = rate(level);
+		if (difficulty == null || !difficulty.isSolvable()) {
+			return level;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Level current = level;
+			while (true) {
+				final Map<Integer, Level> simplified = check(executor, current, difficulty.getLength());
+				if (simplified.isEmpty()) {
+					return current;
+				}
+				boolean changed = false;
+				for (Map.Entry<Integer, Level> entry : simplified.entrySet()) {
+					// the first simplification was checked already, the others need the ones before
+					final Level candidate = changed ? simplify(current, entry.getKey().intValue(), difficulty.getLength()) : entry.getValue();
+					if (candidate != null) {
+						current = candidate;
+						changed = true;
+					}
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the load-bearing tiles of the given level, i.e. the tiles which
+	 * cannot be removed or simplified without changing the length of the shortest solution.
+	 * @param level the level to check, must not be {@code null}
+	 * @return the tiles by cell index (see {@link Level#cell(int, int)}), in order of the cells,
+	 * empty if the level cannot be solved
+	 * @throws InterruptedException if interrupted while waiting for the checks
+	 */
+	public Map<Integer, TileType> loadBearing(final Level level) throws InterruptedException {
+		final Map<Integer, TileType> result = new LinkedHashMap<>();
+		final Difficulty difficulty = rate(level);
+		if (difficulty == null || !difficulty.isSolvable()) {
+			return result;
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final Map<Integer, Level> simplified = check(executor, level, difficulty.getLength());
+			for (int cell = 0; cell < Level.CELLS; cell++) {
+				final TileType tile = level.at(Level.x(cell), Level.y(cell));
+				if (!simplified.containsKey(Integer.valueOf(cell)) && !simplifications(tile).isEmpty()) {
+					result.put(Integer.valueOf(cell), tile);
+				}
+			}
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the simplifications of a tile, the simplest first.
+	 * The player, empty cells and normal exits cannot be simplified.
+	 * @param tile the tile to simplify, must not be {@code null}
+	 * @return the tiles to try instead, never {@code null}
+	 */
+	protected List<TileType> simplifications(final TileType tile) {
+		final List<TileType> result = new ArrayList<>(2);
+		switch (tile) {
+		case PortalBombless:
+			result.add(TileType.Portal);
+			break;
+		case Bomb:
+		case Sensor:
+		case DeflectorTL:
+		case DeflectorTR:
+		case DeflectorBR:
+		case DeflectorBL:
+			result.add(TileType.Empty);
+			result.add(TileType.Wall);
+			break;
+		case Wall:
+		case TrapLR:
+		case TrapTB:
+		case Wormhole:
+			result.add(TileType.Empty);
+			break;
+		default:
+			break;
+		}
+		return result;
+	}
+
+	/**
+	 * Rates a level within the step budget.
+	 * @param level the level to rate, must not be {@code null}
+	 * @return the difficulty, or {@code null} if the budget was exhausted
+	 */
+	protected Difficulty rate(final Level level) {
+		final SolveBudget budget = new SolveBudget(0, maxSteps, 0, ignore -> !Thread.currentThread().isInterrupted());
+		return new HierarchicalSearch(level, new SlideAnalysis(level)).rate(budget);
+	}
+
+	private Map<Integer, Level> check(final ExecutorService executor, final Level level, final int length) throws InterruptedException {
+		final List<Integer> cells = new ArrayList<>();
+		final List<Level> candidates = new ArrayList<>();
+		final List<Callable<Boolean>> tasks = new ArrayList<>();
+		for (int cell = 0; cell < Level.CELLS; cell++) {
+			for (TileType tile : simplifications(level.at(Level.x(cell), Level.y(cell)))) {
+				final Level candidate = replace(level, cell, tile);
+				cells.add(Integer.valueOf(cell));
+				candidates.add(candidate);
+				tasks.add(() -> Boolean.valueOf(keepsLength(candidate, length)));
+			}
+		}
+		final List<Future<Boolean>> futures = executor.invokeAll(tasks);
+		// the simplest simplification keeping the length per cell
+		final Map<Integer, Level> result = new LinkedHashMap<>();
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				if (futures.get(i).get().booleanValue()) {
+					result.putIfAbsent(cells.get(i), candidates.get(i));
+				}
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return result;
+	}
+
+	private Level simplify(final Level level, final int cell, final int length) {
+		final TileType tile = level.at(Level.x(cell), Level.y(cell));
+		for (TileType simpler : simplifications(tile)) {
+			final Level candidate = replace(level, cell, simpler);
+			if (keepsLength(candidate, length)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	private boolean keepsLength(final Level level, final int length) {
+		final Difficulty difficulty = rate(level);
+		return difficulty != null && difficulty.isSolvable() && difficulty.getLength() == length;
+	}
+
+	private static Level replace(final Level level, final int cell, final TileType tile) {
+		final Level result = new Level(level);
+		final TileType old = level.at(Level.x(cell), Level.y(cell));
+		result.set(tile, Level.x(cell), Level.y(cell));
+		if (TileType.Wormhole.equals(old) && level.wormholes.length == 2) {
+			// a single wormhole leads nowhere, remove both
+			final int other = level.otherWormhole(cell);
+			result.set(tile, Level.x(other), Level.y(other));
+		}
+		return result;
+	}
+
+	public static void main(final String... args) throws IOException, InterruptedException {
+		final CommandLine commandLine = new CommandLine(LevelMinimizer.class, true)
+			.option("--levels", "<file>", "the level catalog (default: the built-in levels.json)")
+			.option("--out", "<file>", "the file to write the catalog with the minimized levels to (default: none)")
+			.option("--steps", "<n>", "the maximum number of level states to explore per check (default: 1000000)")
+			.option("--threads", "<n>", "the number of simplifications to check in parallel (default: number of cores)")
+			.note("Without codes all levels of the catalog are minimized. The load-bearing tiles are listed per level.");
+		if (!commandLine.parse(args)) {
+			return;
+		}
+		final File out = commandLine.getFile("--out");
+		final long steps = commandLine.getLong("--steps", 1000000);
+		final int threads = commandLine.getInt("--threads", Runtime.getRuntime().availableProcessors());
+		final Levels levels = commandLine.load(commandLine.getFile("--levels"));
+		final List<String> codes = commandLine.getCodes();
+		final LevelMinimizer minimizer = new LevelMinimizer(threads, steps);
+		for (String code : codes.isEmpty() ? new ArrayList<>(levels.index) : codes) {
+			final long start = System.currentTimeMillis();
+			final Level level = levels.require(code);
+			final Level minimized = minimizer.minimize(level);
+			final Map<Integer, TileType> loadBearing = minimizer.loadBearing(minimized);
+			final StringBuilder sb = new StringBuilder(code).append(": ");
+			sb.append(changedTiles(level, minimized)).append(" tiles removed or simplified, load-bearing:");
+			loadBearing.forEach((cell, tile) -> sb.append(' ').append(tile).append(new Position(cell.intValue())));
+			System.err.println(sb.append(" (").append(System.currentTimeMillis() - start).append("ms)"));
+			if (minimized != level) {
+				levels.setLevel(code, minimized);
+			}
+		}
+		if (out != null) {
+			try (final OutputStream stream = new FileOutputStream(out)) {
+				Levels.save(levels, stream);
+			}
+		}
+	}
+
+	private static int changedTiles(final Level level, final Level other) {
+		int count = 0;
+		for (int y = 0; y < Level.HEIGHT; y++) {
+			for (int x = 0; x < Level.WIDTH; x++) {
+				if (!level.at(x, y).equals(other.at(x, y))) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+}
@@ -11,9 +11,6 @@ import java.awt.Stroke;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
-import java.awt.geom.AffineTransform;
-import java.util.HashMap;
-import java.util.Map;
 
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
@@ -79,6 +76,14 @@ public class LevelPanel extends JPanel implements MouseMotionListener, MouseList
 		return level;
 	}
 
+	/**
+	 * Returns the tile renderers of the panel.
+	 * @return the tile renderers, never {@code null}
+	 */
+	protected TileRenderers getRenderers() {
+		return renderers;
+	}
+
 	/**
 	 * Moves the whole level contents into the given direction.
 	 * This is a lossy operation...
@@ -89,13 +94,12 @@ public class LevelPanel extends JPanel implements MouseMotionListener, MouseList
 		if (level == null) {
 			return;
 		}
-		final Point delta = direction.asPoint();
 		final TileType[][] data = new TileType[Level.HEIGHT][Level.WIDTH];
 		for (int y = 0; y < Level.HEIGHT; y++) {
 			data[y] = new TileType[Level.WIDTH];
-			final int oy = y - delta.y;
+			final int oy = y - direction.getDeltaY();
 			for (int x = 0; x < Level.WIDTH; x++) {
-				final int ox = x - delta.x;
+				final int ox = x - direction.getDeltaX();
 				if (ox >= 0 && ox < Level.WIDTH && oy >= 0 && oy < Level.HEIGHT) {
 					data[y][x] = level.at(ox, oy);
 				} else {
@@ -122,39 +126,9 @@ public class LevelPanel extends JPanel implements MouseMotionListener, MouseList
 		g2d.setBackground(Color.BLACK);
 		g2d.fillRect(0, 0, getWidth(), getHeight());
 		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		final AffineTransform original = g2d.getTransform();
 		if (level != null) {
-			final Map<Point, TileType> deferred = new HashMap<>();
-			for (int y = 0; y < Level.HEIGHT; y++) {
-				final AffineTransform old = g2d.getTransform();
-				for (int x = 0; x < Level.WIDTH; x++) {
-					final TileType type = level.at(x, y);
-					if (TileType.TrapLR.equals(type) || TileType.TrapTB.equals(type)) {
-						deferred.put(new Point(x, y), type);
-					} else {
-						renderers
-							.renderer(type)
-							.accept(g2d);
-					}
-					g2d.translate(32, 0);
-				}
-				g2d.setTransform(old);
-				g2d.translate(0, 32);
-			}
-			if (!deferred.isEmpty()) {
-				deferred
-					.entrySet()
-					.stream()
-					.forEach( entry -> {
-						g2d.setTransform(original);
-						g2d.translate(32 * entry.getKey().x, 32 * entry.getKey().y);
-						renderers
-							.renderer(entry.getValue())
-							.accept(g2d);
-					});
-			}
+			renderers.render(g2d, level);
 		}
-		g2d.setTransform(original);
 		if (tilePosition != null) {
 			g2d.setColor(Color.BLUE);
 			g2d.setStroke(dashedStroke);
@@ -0,0 +1,165 @@
+package de.engehausen.boxitus;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.ListModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+/**
+ * A cache of small preview images of levels. The images are rendered off the
+ * event dispatch thread from a copy of the level and kept in a size-bounded LRU
+ * cache by level instance. Edited levels must be {@link #invalidate(Level) invalidated};
+ * registered as a listener on a list model, changed levels are dropped from the cache.
+ */
+public class LevelThumbnails implements ListDataListener {
+
+	/** the width of a thumbnail in pixels */
+	public static final int WIDTH = 4 * Level.WIDTH;
+	/** the height of a thumbnail in pixels */
+	public static final int HEIGHT = 4 * Level.HEIGHT;
+
+	private static final double SCALE = WIDTH / (32d * Level.WIDTH);
+
+	private final TileRenderers renderers;
+	private final Runnable onUpdate;
+	private final Map<Level, BufferedImage> cache;
+	private final Map<Level, Object> pending;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates the thumbnail cache.
+	 * @param tileRenderers the tile renderers to use, must not be {@code null}
+	 * @param capacity the maximum number of thumbnails to keep
+	 * @param updateCallback callback invoked on the event dispatch thread whenever
+	 * a new thumbnail is available, must not be {@code null}
+	 */
+	public LevelThumbnails(final TileRenderers tileRenderers, final int capacity, final Runnable updateCallback) {
+		renderers = tileRenderers;
+		onUpdate = updateCallback;
+		cache = new LinkedHashMap<Level, BufferedImage>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Level, BufferedImage> eldest) {
+				return size() > capacity;
+			}
+		};
+		pending = new HashMap<>();
+		// last in, first out: what was requested last is what is visible now
+		executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingDeque<Runnable>() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			public boolean offer(final Runnable task) {
+				return offerFirst(task);
+			}
+		}, task -> {
+			final Thread thread = new Thread(task, "thumbnails");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the thumbnail of the given level. If the thumbnail is not
+	 * available yet, a copy of the level is scheduled for rendering.
+	 * Must be called on the thread changing the level, i.e. the event dispatch thread.
+	 * @param level the level to get the thumbnail for, must not be {@code null}
+	 * @return the thumbnail, or {@code null} if it is not rendered yet
+	 */
+	public BufferedImage get(final Level level) {
+		synchronized (cache) {
+			final BufferedImage result = cache.get(level);
+			if (result == null && !pending.containsKey(level)) {
+				final Object token = new Object();
+				pending.put(level, token);
+				// the level may be edited while the thumbnail is rendered
+				final Level snapshot = new Level(level);
+				executor.execute(() -> render(level, snapshot, token));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Drops the thumbnail of the given level, it will be rendered again
+	 * on the next request.
+	 * @param level the level that changed, may be {@code null}
+	 */
+	public void invalidate(final Level level) {
+		if (level == null) {
+			return;
+		}
+		synchronized (cache) {
+			cache.remove(level);
+			pending.remove(level);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void contentsChanged(final ListDataEvent e) {
+		@SuppressWarnings("unchecked")
+		final ListModel<Level> model = (ListModel<Level>) e.getSource();
+		final int max = Math.min(e.getIndex1(), model.getSize() - 1);
+		for (int i = Math.max(0, e.getIndex0()); i <= max; i++) {
+			invalidate(model.getElementAt(i));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void intervalAdded(final ListDataEvent e) {
+		// ignored, new levels are rendered on request
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void intervalRemoved(final ListDataEvent e) {
+		// ignored, thumbnails of removed levels age out of the cache
+	}
+
+	private void render(final Level level, final Level snapshot, final Object token) {
+		synchronized (cache) {
+			if (pending.get(level) != token) {
+				// invalidated in the meantime
+				return;
+			}
+		}
+		final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		final Graphics2D g2d = image.createGraphics();
+		try {
+			g2d.setColor(Color.BLACK);
+			g2d.fillRect(0, 0, WIDTH, HEIGHT);
+			g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g2d.scale(SCALE, SCALE);
+			renderers.render(g2d, snapshot);
+		} finally {
+			g2d.dispose();
+		}
+		synchronized (cache) {
+			if (!pending.remove(level, token)) {
+				return;
+			}
+			cache.put(level, image);
+		}
+		SwingUtilities.invokeLater(onUpdate);
+	}
+
+}
@@ -1,13 +1,11 @@
 package de.engehausen.boxitus;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.WritableRaster;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,23 +14,18 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import javax.imageio.ImageIO;
-import javax.swing.ListModel;
-import javax.swing.event.ListDataEvent;
-import javax.swing.event.ListDataListener;
-
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
- * Helper and list model of all known levels.
+ * Catalog of levels, each identified by a unique code. The catalog is free of
+ * user interface classes; the editor shows it through a {@link LevelListModel}.
  */
-public class Levels implements ListModel<Level> {
+public class Levels {
 
 	private static final ObjectMapper MAPPER = new ObjectMapper();
 
 	private static final Random RANDOM = new Random(System.nanoTime());
-	private static final int WIDTH = 4 + Level.WIDTH * Level.HEIGHT;
 	private static final char[] ALPHABET = Stream.of(
 			IntStream.range('0', '9'),
 			IntStream.range('a', 'z'),
@@ -60,6 +53,18 @@ public class Levels implements ListModel<Level> {
 		return MAPPER.readValue(stream, Levels.class);
 	}
 
+	/**
+	 * Loads the levels from the given file.
+	 * @param file the file to read from, {@code null} for the levels of the game
+	 * @return the levels read
+	 * @throws IOException in case of error
+	 */
+	public static Levels load(final File file) throws IOException {
+		try (final InputStream stream = file == null ? Levels.class.getResourceAsStream("/levels.json") : new FileInputStream(file)) {
+			return load(stream);
+		}
+	}
+
 	/**
 	 * Saves the given levels to the output stream.
 	 * @param levels the levels to store, must not be {@code null}
@@ -86,7 +91,6 @@ public class Levels implements ListModel<Level> {
 
 	@JsonIgnore
 	private Map<String, Level> levels;
-	private List<ListDataListener> listeners;
 
 	/**
 	 * Creates the levels model.
@@ -95,35 +99,14 @@ public class Levels implements ListModel<Level> {
 		index = new ArrayList<>();
 		data = new ArrayList<>();
 		levels = new HashMap<>();
-		listeners = new ArrayList<>(2);
-	}
-
-	/**
-	 * Returns all known levels as a PNG. This is used
-	 * as a cheap compression method and is being read again
-	 * in {@code src/Levels.ts}
-	 * @return the data URI for the level information, never {@code null}
-	 */
-	public String asDataURL() {
-		final int max = data.size();
-		final BufferedImage buffer = new BufferedImage(WIDTH, max, BufferedImage.TYPE_3BYTE_BGR);
-		final WritableRaster raster = buffer.getRaster();
-		for (int y = 0; y < max; y++) {
-			raster.setPixels(0, y, WIDTH, 1, asPixels(y));
-		}
-		try (final ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-			ImageIO.write(buffer, "png", baos);
-			return "data:image/png;base64," + Base64.getEncoder().encodeToString(baos.toByteArray());
-		} catch (IOException e) {
-			throw new IllegalStateException(e);
-		}
 	}
 
 	/**
 	 * Adds the given level, creating a unique code for it.
 	 * @param level the level to add, must not be {@code null}
+	 * @return the code of the level added, never {@code null}
 	 */
-	public void addLevel(final Level level) {
+	public String addLevel(final Level level) {
 		String code;
 		do {
 			code = createCode();
@@ -131,38 +114,37 @@ public class Levels implements ListModel<Level> {
 		index.add(code);
 		data.add(level.toStringArray());
 		levels.put(code, level);
-		final ListDataEvent event = new ListDataEvent(this, ListDataEvent.INTERVAL_ADDED, index.size() - 1, index.size());
-		listeners.stream().forEach( l -> l.intervalAdded(event) );
+		return code;
 	}
 
 	/**
 	 * Sets the level for the given code.
 	 * @param code the code to use, must be an already existing code
 	 * @param level the level to set for this code
+	 * @return the index of the level, or -1 if the code is unknown
 	 */
-	public void setLevel(final String code, final Level level) {
+	public int setLevel(final String code, final Level level) {
 		final int idx = index.indexOf(code);
 		if (idx >= 0) {
 			data.set(idx, level.toStringArray());
 			levels.put(code, level);
-			final ListDataEvent event = new ListDataEvent(this, ListDataEvent.CONTENTS_CHANGED, idx, idx);
-			listeners.stream().forEach( l -> l.contentsChanged(event) );
 		}
+		return idx;
 	}
 
 	/**
 	 * Removes the level with the given code.
 	 * @param code the code of the level to remove
+	 * @return the index the level had, or -1 if the code is unknown
 	 */
-	public void removeLevel(final String code) {
+	public int removeLevel(final String code) {
 		final int idx = index.indexOf(code);
 		if (idx >= 0) {
 			index.remove(idx);
 			data.remove(idx);
 			levels.remove(code);
-			final ListDataEvent event = new ListDataEvent(this, ListDataEvent.INTERVAL_REMOVED, idx, idx);
-			listeners.stream().forEach( l -> l.intervalRemoved(event) );
 		}
+		return idx;
 	}
 
 	/**
@@ -190,41 +172,40 @@ public class Levels implements ListModel<Level> {
 	public void swap(final int from, final int to) {
 		swap(index, from, to);
 		swap(data, from, to);
-		final ListDataEvent event = new ListDataEvent(this, ListDataEvent.CONTENTS_CHANGED, from, to);
-		listeners.stream().forEach( l -> l.contentsChanged(event) );
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Returns the number of levels.
+	 * @return the number of levels
 	 */
 	@JsonIgnore
-	@Override
 	public int getSize() {
 		return index.size();
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Returns the level at the given index. Levels are created on first access,
+	 * which is not thread-safe.
+	 * @param idx the index of the level
+	 * @return the level, never {@code null}
 	 */
-	@Override
 	public Level getElementAt(final int idx) {
 		return levels.computeIfAbsent(index.get(idx), code -> new Level(data.get(idx)));
 	}
 
 	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public void addListDataListener(final ListDataListener l) {
-		listeners.add(l);
-	}
-
-	/**
-	 * {@inheritDoc}
+	 * Returns the level with the given code. Levels are created on first access,
+	 * which is not thread-safe.
+	 * @param code the code of the level, must not be {@code null}
+	 * @return the level, never {@code null}
+	 * @throws IllegalArgumentException if there is no level with the code
 	 */
-	@Override
-	public void removeListDataListener(final ListDataListener l) {
-		listeners.remove(l);
+	public Level require(final String code) {
+		final int idx = index.indexOf(code);
+		if (idx < 0) {
+			throw new IllegalArgumentException("unknown level code " + code);
+		}
+		return getElementAt(idx);
 	}
 
 	private String createCode() {
@@ -241,25 +222,4 @@ public class Levels implements ListModel<Level> {
 		list.set(from, temp);
 	}
 
-	private int[] asPixels(final int idx) {
-		final int[] pixels = new int[3 * WIDTH];
-		int i = asPixels(pixels, getCode(idx), 0);
-		final Level level = getElementAt(idx);
-		for (final String row : level.toStringArray()) {
-			i = asPixels(pixels, row, i);
-		}
-		return pixels;
-	}
-	
-	private int asPixels(final int pixels[], final String raw, final int offset) {
-		final int size = raw.length();
-		for (int i = 0; i < size; i++) {
-			final int v = raw.charAt(i);
-			pixels[offset + 3 * i] = v;
-			pixels[1 + offset + 3 * i] = v;
-			pixels[2 + offset + 3 * i] = v;
-		}
-		return offset + 3 * size;
-	}
-
 }
@@ -0,0 +1,86 @@
+package de.engehausen.boxitus;
+
+/**
+ * A mutable position of the player, stored as a packed cell index
+ * (see {@link Level#cell(int, int)}). It is handed to
+ * {@link StatefulLevel#move(Position, Solver.Move.Direction)}, which
+ * changes it to the resting position of the move.
+ */
+public class Position {
+
+	private int cell;
+
+	/**
+	 * Creates the position.
+	 * @param aCell the cell index
+	 */
+	public Position(final int aCell) {
+		cell = aCell;
+	}
+
+	/**
+	 * Creates the position from the given coordinates.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 */
+	public Position(final int x, final int y) {
+		this(Level.cell(x, y));
+	}
+
+	/**
+	 * Returns the cell index of the position.
+	 * @return the cell index
+	 */
+	public int get() {
+		return cell;
+	}
+
+	/**
+	 * Sets the cell index of the position.
+	 * @param aCell the cell index
+	 */
+	public void set(final int aCell) {
+		cell = aCell;
+	}
+
+	/**
+	 * Returns the x coordinate of the position.
+	 * @return the x coordinate
+	 */
+	public int getX() {
+		return Level.x(cell);
+	}
+
+	/**
+	 * Returns the y coordinate of the position.
+	 * @return the y coordinate
+	 */
+	public int getY() {
+		return Level.y(cell);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return cell;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		return obj instanceof Position && ((Position) obj).cell == cell;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "(" + getX() + ", " + getY() + ")";
+	}
+
+}
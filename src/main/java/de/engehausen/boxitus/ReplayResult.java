@@ -0,0 +1,97 @@
+package de.engehausen.boxitus;
+
+/**
+ * The outcome of replaying a solution in the {@link GameSimulation simulated game}:
+ * whether the game was solved, how long it took and where the game first
+ * differed from the solver.
+ */
+public class ReplayResult {
+
+	private final boolean solved;
+	private final long steps;
+	private final int moves;
+	private final int divergence;
+	private final String message;
+
+	/**
+	 * Creates the result.
+	 * @param isSolved whether the player left the level by the exit
+	 * @param stepCount the number of steps until the level was left, or played if it was not left
+	 * @param moveCount the number of moves played
+	 * @param diverging the index of the first move which ended differently in the game than in the solver, -1 if none did
+	 * @param description a description of the divergence or of why the level was not left, may be {@code null}
+	 */
+	public ReplayResult(final boolean isSolved, final long stepCount, final int moveCount, final int diverging, final String description) {
+		solved = isSolved;
+		steps = stepCount;
+		moves = moveCount;
+		divergence = diverging;
+		message = description;
+	}
+
+	/**
+	 * Returns whether the game was solved.
+	 * @return {@code true} if the player left the level by the exit
+	 */
+	public boolean isSolved() {
+		return solved;
+	}
+
+	/**
+	 * Returns the number of steps played until the level was left.
+	 * @return the number of steps
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Returns the time the steps played take in the game.
+	 * @return the time in milliseconds, at {@link GameSimulation#STEPS_PER_SECOND} steps per second
+	 */
+	public long getMillis() {
+		return steps * 1000 / GameSimulation.STEPS_PER_SECOND;
+	}
+
+	/**
+	 * Returns the number of moves played.
+	 * @return the number of moves
+	 */
+	public int getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Returns the first move which ended differently in the game than in the solver.
+	 * @return the index of the move, -1 if the game and the solver agree
+	 */
+	public int getDivergence() {
+		return divergence;
+	}
+
+	/**
+	 * Returns what went differently, or why the level was not left.
+	 * @return the description, or {@code null} if the level was left as expected
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(solved ? "solved" : "not solved");
+		sb.append(" after ").append(moves).append(" moves");
+		if (divergence >= 0) {
+			sb.append(", move ").append(divergence + 1).append(" diverges");
+		}
+		if (message != null) {
+			sb.append(", ").append(message);
+		}
+		return sb.append(" (").append(steps).append(" steps, ").append(getMillis()).append("ms)").toString();
+	}
+
+}
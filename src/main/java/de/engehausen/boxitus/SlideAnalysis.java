@@ -0,0 +1,231 @@
+package de.engehausen.boxitus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+import de.engehausen.boxitus.Level.TileType;
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * Static analysis of the slide graph of a level, computed once before searching.
+ * <p>
+ * Tiles which can change during the game (bombs, traps and the walls next to traps)
+ * are treated conservatively: a slide may either stop in front of them or pass them.
+ * The resulting graph has every transition possible in any level state, so a cell
+ * from which the exit cannot be reached in this graph can never lead to a solution,
+ * and the distance to the exit in this graph is a lower bound of the number of
+ * moves still needed.
+ */
+public class SlideAnalysis {
+
+	/** distance of cells from which the exit can never be reached */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	private static final int CELLS = Level.CELLS;
+	private static final int EXIT = -1;
+
+	private final StatefulLevel level;
+	private final BitSet dynamic;
+	private final int[] distance;
+
+	/**
+	 * Analyzes the given level.
+	 * @param root the level to analyze, must have an exit position
+	 */
+	public SlideAnalysis(final Level root) {
+		level = new StatefulLevel(root, true);
+		dynamic = new BitSet(CELLS);
+		for (int y = 0; y < Level.HEIGHT; y++) {
+			for (int x = 0; x < Level.WIDTH; x++) {
+				switch (root.at(x, y)) {
+				case Bomb:
+					markDynamic(x, y);
+					break;
+				case TrapLR:
+					markDynamic(x, y);
+					markDynamic(x, y - 1);
+					markDynamic(x, y + 1);
+					break;
+				case TrapTB:
+					markDynamic(x, y);
+					markDynamic(x - 1, y);
+					markDynamic(x + 1, y);
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		// the predecessors of the exit are stored at the end of the list
+		final List<List<Integer>> predecessors = new ArrayList<>(CELLS + 1);
+		for (int i = 0; i <= CELLS; i++) {
+			predecessors.add(new ArrayList<>(4));
+		}
+		for (int from = 0; from < CELLS; from++) {
+			for (Direction direction : Direction.values()) {
+				final BitSet targets = slide(from, direction);
+				for (int target = targets.nextSetBit(0); target >= 0; target = targets.nextSetBit(target + 1)) {
+					predecessors.get(target).add(Integer.valueOf(from));
+				}
+			}
+		}
+		// breadth-first search backwards from the exit
+		distance = new int[CELLS];
+		Arrays.fill(distance, UNREACHABLE);
+		final Deque<Integer> queue = new ArrayDeque<>();
+		final int exit = root.exitPosition;
+		distance[exit] = 0;
+		for (Integer from : predecessors.get(CELLS)) {
+			if (distance[from.intValue()] == UNREACHABLE) {
+				distance[from.intValue()] = 1;
+				queue.add(from);
+			}
+		}
+		while (!queue.isEmpty()) {
+			final int current = queue.removeFirst().intValue();
+			for (Integer from : predecessors.get(current)) {
+				if (distance[from.intValue()] == UNREACHABLE) {
+					distance[from.intValue()] = distance[current] + 1;
+					queue.addLast(from);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if the exit can never be reached from the given cell.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 * @return {@code true} if no solution can continue from the given cell
+	 */
+	public boolean isDead(final int x, final int y) {
+		return isDead(cell(x, y));
+	}
+
+	/**
+	 * Checks if the exit can never be reached from the given cell.
+	 * @param cell the index of the cell, see {@link Level#cell(int, int)}
+	 * @return {@code true} if no solution can continue from the given cell
+	 */
+	public boolean isDead(final int cell) {
+		return distance[cell] == UNREACHABLE;
+	}
+
+	/**
+	 * Returns a lower bound of the number of moves needed to reach the exit from
+	 * the given cell.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 * @return the minimum number of moves, or {@link #UNREACHABLE}
+	 */
+	public int distance(final int x, final int y) {
+		return distance(cell(x, y));
+	}
+
+	/**
+	 * Returns a lower bound of the number of moves needed to reach the exit from
+	 * the given cell.
+	 * @param cell the index of the cell, see {@link Level#cell(int, int)}
+	 * @return the minimum number of moves, or {@link #UNREACHABLE}
+	 */
+	public int distance(final int cell) {
+		return distance[cell];
+	}
+
+	/**
+	 * Computes all possible resting cells of a slide, following all variants
+	 * of the dynamic tiles.
+	 * @return the resting cells, with bit {@code CELLS} set if the exit may be reached
+	 */
+	private BitSet slide(final int origin, final Direction direction) {
+		final BitSet result = new BitSet(CELLS + 1);
+		// (cell, direction) pairs already followed, to stop on loops
+		final BitSet seen = new BitSet(4 * CELLS);
+		final Deque<int[]> pending = new ArrayDeque<>();
+		pending.add(new int[] { origin, direction.ordinal() });
+		while (!pending.isEmpty()) {
+			final int[] current = pending.removeLast();
+			int position = current[0];
+			Direction vector = Direction.values()[current[1]];
+			while (position != EXIT) {
+				final int x = Level.x(position) + vector.getDeltaX();
+				final int y = Level.y(position) + vector.getDeltaY();
+				if (x < 0 || x >= Level.WIDTH || y < 0 || y >= Level.HEIGHT) {
+					// left the field
+					break;
+				}
+				final int next = cell(x, y);
+				if (seen.get(4 * next + vector.ordinal())) {
+					break;
+				}
+				seen.set(4 * next + vector.ordinal());
+				if (dynamic.get(next)) {
+					// either blocks or lets pass, follow both
+					stop(result, origin, position);
+					position = next;
+					continue;
+				}
+				final TileType tile = level.at(x, y);
+				switch (tile) {
+				case Portal:
+				case PortalBombless:
+					result.set(CELLS);
+					position = EXIT;
+					break;
+				case Wall:
+				case Sensor:
+					stop(result, origin, position);
+					position = EXIT;
+					break;
+				case DeflectorTL:
+				case DeflectorTR:
+				case DeflectorBR:
+				case DeflectorBL:
+					final Direction deflected = StatefulLevel.deflect(tile, vector);
+					if (deflected == null) {
+						stop(result, origin, position);
+						position = EXIT;
+					} else {
+						vector = deflected;
+						position = next;
+					}
+					break;
+				case Wormhole:
+					final int other = level.otherWormhole(next);
+					if (other == next) {
+						position = next;
+					} else {
+						pending.add(new int[] { other, vector.ordinal() });
+						position = EXIT;
+					}
+					break;
+				default:
+					position = next;
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	private void markDynamic(final int x, final int y) {
+		if (x >= 0 && x < Level.WIDTH && y >= 0 && y < Level.HEIGHT) {
+			dynamic.set(cell(x, y));
+		}
+	}
+
+	private static void stop(final BitSet result, final int origin, final int position) {
+		if (position != origin) {
+			result.set(position);
+		}
+	}
+
+	private static int cell(final int x, final int y) {
+		return Level.cell(x, y);
+	}
+
+}
@@ -0,0 +1,180 @@
+package de.engehausen.boxitus;
+
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.engehausen.boxitus.Solver.Move;
+
+/**
+ * The timeline of a solution, listing every cell the player slides through.
+ * The time unit is a "tick", the time the player needs to cross one cell.
+ * The cell paths are computed once when creating the timeline, so that frames
+ * can be rendered without any further level computations.
+ */
+public class SlideTimeline {
+
+	/** the ticks to pause before each move */
+	public static final int PAUSE = 2;
+
+	private final List<Point[]> paths;
+	private final List<StatefulLevel> states;
+	private final List<List<Point>> changes;
+	private final int[] offsets;
+
+	/**
+	 * Creates the timeline by replaying the given moves.
+	 * @param moves the moves of a solution, must not be {@code null} or empty
+	 */
+	public SlideTimeline(final List<Move> moves) {
+		final int max = moves.size();
+		paths = new ArrayList<>(max);
+		states = new ArrayList<>(max + 1);
+		changes = new ArrayList<>(max);
+		offsets = new int[max + 1];
+		final Move first = moves.get(0);
+		final Position position = new Position(first.getCell());
+		StatefulLevel level = (StatefulLevel) first.getLevel();
+		states.add(level);
+		for (int i = 0; i < max; i++) {
+			final List<Point> path = new ArrayList<>();
+			path.add(point(position.get()));
+			final StatefulLevel next = level.move(position, moves.get(i).direction(), cell -> path.add(point(cell)));
+			if (!point(position.get()).equals(path.get(path.size() - 1))) {
+				path.add(point(position.get()));
+			}
+			paths.add(path.toArray(new Point[path.size()]));
+			offsets[i + 1] = offsets[i] + PAUSE + path.size() - 1;
+			if (next == null) {
+				// should not happen for a solution, play it anyway
+				changes.add(Collections.emptyList());
+				states.add(level);
+			} else {
+				changes.add(differences(level, next));
+				states.add(next);
+				level = next;
+			}
+		}
+	}
+
+	/**
+	 * Returns the length of the timeline.
+	 * @return the length of the timeline in ticks
+	 */
+	public int length() {
+		return offsets[offsets.length - 1];
+	}
+
+	/**
+	 * Returns the number of moves of the timeline.
+	 * @return the number of moves
+	 */
+	public int size() {
+		return paths.size();
+	}
+
+	/**
+	 * Returns the tick at which the given move starts.
+	 * @param move the index of the move
+	 * @return the tick at which the move starts
+	 */
+	public int start(final int move) {
+		return offsets[move];
+	}
+
+	/**
+	 * Returns the index of the move being played at the given time.
+	 * @param tick the time
+	 * @return the index of the move, {@link #size()} if the time is past the end of the timeline
+	 */
+	public int moveAt(final double tick) {
+		int low = 0;
+		int high = offsets.length - 1;
+		if (tick >= offsets[high]) {
+			return high;
+		}
+		while (high - low > 1) {
+			final int mid = (low + high) >>> 1;
+			if (offsets[mid] <= tick) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the player position in pixels at the given time.
+	 * @param tick the time
+	 * @return the position, never {@code null}
+	 */
+	public Point2D.Double positionAt(final double tick) {
+		final int move = moveAt(tick);
+		if (move == paths.size()) {
+			final Point[] path = paths.get(move - 1);
+			return pixels(path[path.length - 1]);
+		}
+		final Point[] path = paths.get(move);
+		final double t = tick - offsets[move] - PAUSE;
+		if (t <= 0) {
+			return pixels(path[0]);
+		}
+		final int cell = (int) t;
+		if (cell + 1 >= path.length) {
+			return pixels(path[path.length - 1]);
+		}
+		final Point from = path[cell];
+		final Point to = path[cell + 1];
+		if (Math.abs(to.x - from.x) + Math.abs(to.y - from.y) > 1) {
+			// wormhole, no sliding between the holes
+			return pixels(t - cell < 0.5 ? from : to);
+		}
+		final double fraction = t - cell;
+		return new Point2D.Double(32 * (from.x + fraction * (to.x - from.x)), 32 * (from.y + fraction * (to.y - from.y)));
+	}
+
+	/**
+	 * Returns the level state before the given move.
+	 * @param move the index of the move, {@link #size()} returns the final state
+	 * @return the level state, never {@code null}
+	 */
+	public StatefulLevel stateBefore(final int move) {
+		return states.get(move);
+	}
+
+	/**
+	 * Returns the cells changed by the given move, e.g. cleared bombs or fired traps.
+	 * @param move the index of the move
+	 * @return the changed cells, never {@code null}
+	 */
+	public List<Point> changes(final int move) {
+		return changes.get(move);
+	}
+
+	private static Point point(final int cell) {
+		return new Point(Level.x(cell), Level.y(cell));
+	}
+
+	private static Point2D.Double pixels(final Point cell) {
+		return new Point2D.Double(32 * cell.x, 32 * cell.y);
+	}
+
+	private static List<Point> differences(final Level before, final Level after) {
+		if (before == after) {
+			return Collections.emptyList();
+		}
+		final List<Point> result = new ArrayList<>();
+		for (int y = 0; y < Level.HEIGHT; y++) {
+			for (int x = 0; x < Level.WIDTH; x++) {
+				if (!before.at(x, y).equals(after.at(x, y))) {
+					result.add(new Point(x, y));
+				}
+			}
+		}
+		return result;
+	}
+
+}
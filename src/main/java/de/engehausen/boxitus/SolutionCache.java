@@ -0,0 +1,97 @@
+package de.engehausen.boxitus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import de.engehausen.boxitus.Solver.Engine;
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * An on-disk cache of level solutions. Entries are keyed by the content
+ * hash of the level and the solver engine and its version, so only
+ * levels which changed since they were last solved need to be solved again.
+ * The cache may be shared by several processes.
+ */
+public class SolutionCache {
+
+	/** the system property naming the directory of the default cache */
+	public static final String DIRECTORY_PROPERTY = "boxitus.solutions";
+
+	private static final TypeReference<List<List<Direction>>> TYPE = new TypeReference<List<List<Direction>>>() {};
+
+	private final File directory;
+
+	/**
+	 * Creates the cache.
+	 * @param folder the directory to store the solutions in, must not be {@code null}.
+	 * It is created if it does not exist.
+	 */
+	public SolutionCache(final File folder) {
+		directory = folder;
+	}
+
+	/**
+	 * Returns the cache in the directory given by the {@value #DIRECTORY_PROPERTY}
+	 * system property, or in {@code .boxitus/solutions} of the user's home directory.
+	 * @return the default cache, never {@code null}
+	 */
+	public static SolutionCache getDefault() {
+		final String folder = System.getProperty(DIRECTORY_PROPERTY);
+		if (folder != null) {
+			return new SolutionCache(new File(folder));
+		}
+		return new SolutionCache(new File(new File(System.getProperty("user.home"), ".boxitus"), "solutions"));
+	}
+
+	/**
+	 * Returns the cached solutions of the given level.
+	 * @param level the level, must not be {@code null}
+	 * @param engine the engine that solved the level, must not be {@code null}
+	 * @return the solutions, or {@code null} if the level is not cached
+	 */
+	public List<List<Direction>> get(final Level level, final Engine engine) {
+		final File file = file(level, engine);
+		if (file.isFile()) {
+			try {
+				return Levels.getObjectMapper().readValue(file, TYPE);
+			} catch (IOException e) {
+				// treat as not cached, the entry will be overwritten
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the solutions of the given level.
+	 * @param level the level, must not be {@code null}
+	 * @param engine the engine that solved the level, must not be {@code null}
+	 * @param solutions the solutions, must not be {@code null}
+	 */
+	public void put(final Level level, final Engine engine, final List<List<Direction>> solutions) {
+		final File file = file(level, engine);
+		try {
+			Files.createDirectories(directory.toPath());
+			// write to a temporary file first, concurrent readers must not see partial entries
+			final Path temp = Files.createTempFile(directory.toPath(), file.getName(), ".tmp");
+			try {
+				Levels.getObjectMapper().writeValue(temp.toFile(), solutions);
+				Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			// not being able to cache is no reason to fail
+		}
+	}
+
+	private File file(final Level level, final Engine engine) {
+		return new File(directory, level.contentHash() + "-" + engine.name().toLowerCase() + "-" + engine.getVersion() + ".json");
+	}
+
+}
@@ -0,0 +1,145 @@
+package de.engehausen.boxitus;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.engehausen.boxitus.Level.TileType;
+import de.engehausen.boxitus.Solver.Move;
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * A compact solution of a level: the start level and one byte per move.
+ * The intermediate level states are not retained, {@link #moves()} rebuilds
+ * them on demand by replaying the solution, so the start level must not be
+ * changed while the solution is in use.
+ */
+public class SolutionPath {
+
+	private static final Direction[] DIRECTIONS = Direction.values();
+
+	private final Level start;
+	private final byte[] directions;
+
+	/**
+	 * Creates the solution.
+	 * @param level the level the solution starts on, must not be {@code null}
+	 * @param moves the directions to move the player in, must not be {@code null}
+	 */
+	public SolutionPath(final Level level, final List<Direction> moves) {
+		start = level;
+		directions = new byte[moves.size()];
+		for (int i = 0; i < directions.length; i++) {
+			directions[i] = (byte) moves.get(i).ordinal();
+		}
+	}
+
+	/**
+	 * Creates the solution from the given direction ordinals.
+	 * @param level the level the solution starts on, must not be {@code null}
+	 * @param ordinals the ordinals of the directions, must not be {@code null};
+	 * the array is not copied
+	 */
+	SolutionPath(final Level level, final byte[] ordinals) {
+		start = level;
+		directions = ordinals;
+	}
+
+	/**
+	 * Returns the level the solution starts on.
+	 * @return the start level, never {@code null}
+	 */
+	public Level getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the number of moves of the solution.
+	 * @return the number of moves
+	 */
+	public int size() {
+		return directions.length;
+	}
+
+	/**
+	 * Returns the direction of the given move.
+	 * @param index the index of the move
+	 * @return the direction, never {@code null}
+	 */
+	public Direction direction(final int index) {
+		return DIRECTIONS[directions[index]];
+	}
+
+	/**
+	 * Returns the directions of the solution.
+	 * @return an unmodifiable view of the directions, never {@code null}
+	 */
+	public List<Direction> directions() {
+		return new AbstractList<Direction>() {
+			@Override
+			public Direction get(final int index) {
+				return direction(index);
+			}
+			@Override
+			public int size() {
+				return directions.length;
+			}
+		};
+	}
+
+	/**
+	 * Replays the solution on the start level, restoring the level state of every move.
+	 * @return the moves, or {@code null} if the directions do not solve the level
+	 */
+	public List<Move> moves() {
+		final List<Move> result = new ArrayList<>(directions.length);
+		final Position position = new Position(start.playerPosition);
+		StatefulLevel level = new StatefulLevel(start, true);
+		for (int i = 0; i < directions.length; i++) {
+			if (Solver.isExit(level.at(position.getX(), position.getY()))) {
+				return null;
+			}
+			final Direction direction = direction(i);
+			result.add(new Move(direction, position.get(), level));
+			level = level.move(position, direction);
+			if (level == null) {
+				return null;
+			}
+		}
+		final TileType tile = level.at(position.getX(), position.getY());
+		return Solver.isExit(tile) && Solver.isSolved(tile, level) ? result : null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(directions);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		final SolutionPath other = (SolutionPath) obj;
+		return start == other.start && Arrays.equals(directions, other.directions);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return directions().toString();
+	}
+
+}
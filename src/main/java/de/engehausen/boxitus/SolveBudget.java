@@ -0,0 +1,122 @@
+package de.engehausen.boxitus;
+
+import java.util.function.Predicate;
+
+/**
+ * Limits for a single run of the solver: the wall time, the number of search
+ * steps and the heap in use. The budget is the control predicate of the run and
+ * counts its search steps, so an instance must only be used for one run.
+ * What a search step is depends on the engine: the depth-first engine takes
+ * a step per move tried, the hierarchical engine per level state entered.
+ * The clock and heap are only sampled every few steps, as the predicate
+ * is consulted for every search step.
+ */
+public class SolveBudget implements Predicate<Void> {
+
+	private static final int SAMPLE_MASK = 1023;
+
+	private final long timeLimit;
+	private final long stepLimit;
+	private final long memoryLimit;
+	private final Predicate<Void> control;
+	private final Runtime runtime;
+	private long start;
+	private long deadline;
+	private long steps;
+	private String exceeded;
+
+	/**
+	 * Creates the budget.
+	 * @param millis the wall time budget in milliseconds, zero or less for no limit
+	 * @param maxSteps the maximum number of search steps, zero or less for no limit
+	 * @param maxHeap the heap size in bytes above which solving is aborted, zero or less for no limit
+	 */
+	public SolveBudget(final long millis, final long maxSteps, final long maxHeap) {
+		this(millis, maxSteps, maxHeap, ignore -> true);
+	}
+
+	/**
+	 * Creates the budget with an additional control predicate, e.g. for
+	 * a cancel button.
+	 * @param millis the wall time budget in milliseconds, zero or less for no limit
+	 * @param maxSteps the maximum number of search steps, zero or less for no limit
+	 * @param maxHeap the heap size in bytes above which solving is aborted, zero or less for no limit
+	 * @param aControl a control predicate which can be used to abort the computation,
+	 * must not be {@code null}
+	 */
+	public SolveBudget(final long millis, final long maxSteps, final long maxHeap, final Predicate<Void> aControl) {
+		timeLimit = millis;
+		stepLimit = maxSteps;
+		memoryLimit = maxHeap;
+		control = aControl;
+		runtime = Runtime.getRuntime();
+		start();
+	}
+
+	/**
+	 * Returns a budget without limits.
+	 * @return a new budget without limits, never {@code null}
+	 */
+	public static SolveBudget unlimited() {
+		return new SolveBudget(0, 0, 0);
+	}
+
+	/**
+	 * Starts the clock of the budget, called by the solver when the search begins.
+	 */
+	public void start() {
+		start = System.currentTimeMillis();
+		deadline = timeLimit > 0 ? start + timeLimit : Long.MAX_VALUE;
+		steps = 0;
+		exceeded = null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean test(final Void ignored) {
+		if (exceeded != null) {
+			return false;
+		}
+		steps++;
+		if (stepLimit > 0 && steps > stepLimit) {
+			exceeded = "step budget exceeded";
+		} else if ((steps & SAMPLE_MASK) == 0) {
+			if (System.currentTimeMillis() > deadline) {
+				exceeded = "time budget exceeded";
+			} else if (memoryLimit > 0 && runtime.totalMemory() - runtime.freeMemory() > memoryLimit) {
+				exceeded = "memory budget exceeded";
+			}
+		}
+		if (exceeded == null && !control.test(ignored)) {
+			exceeded = "aborted";
+		}
+		return exceeded == null;
+	}
+
+	/**
+	 * Returns the number of search steps taken since the start.
+	 * @return the number of search steps
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Returns the time elapsed since the start.
+	 * @return the elapsed time in milliseconds
+	 */
+	public long getElapsed() {
+		return System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Returns why the budget stopped the search.
+	 * @return the reason, or {@code null} if the budget was not exceeded
+	 */
+	public String getExceeded() {
+		return exceeded;
+	}
+
+}
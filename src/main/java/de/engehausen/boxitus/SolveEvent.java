@@ -0,0 +1,96 @@
+package de.engehausen.boxitus;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a solver run. This class must only be loaded
+ * if {@link SolverMetrics#JFR} is set, so the solver still runs in JVMs
+ * without the flight recorder.
+ */
+@Name("de.engehausen.boxitus.Solve")
+@Label("Level Solved")
+@Category("Boxitus")
+@Description("A run of the level solver")
+class SolveEvent extends Event {
+
+	@Label("Level")
+	@Description("The content hash of the level")
+	String level;
+
+	@Label("Engine")
+	String engine;
+
+	@Label("Requested Engine")
+	String requested;
+
+	@Label("Solution Length")
+	int length;
+
+	@Label("Abort Reason")
+	String abortReason;
+
+	@Label("Expansions")
+	long expansions;
+
+	@Label("Duplicates")
+	long duplicates;
+
+	@Label("Level Copies")
+	long copies;
+
+	@Label("Slide Steps")
+	long slideSteps;
+
+	@Label("Peak Visited")
+	@Description("The greatest number of nodes remembered by the search at once")
+	long peakVisited;
+
+	@Label("Max Depth")
+	int maxDepth;
+
+	@Label("Branching Factor")
+	double branching;
+
+	/**
+	 * Starts the event at the begin of a run.
+	 * @return the event, to be passed to {@link #finish(Object, Level, Solver.Engine, SolveResult)}
+	 */
+	static Object start() {
+		final SolveEvent event = new SolveEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Completes and commits the event of a run.
+	 * @param started the event returned by {@link #start()}, must not be {@code null}
+	 * @param level the level solved, must not be {@code null}
+	 * @param requested the engine of the solver, must not be {@code null}
+	 * @param result the result of the run, must not be {@code null}
+	 */
+	static void finish(final Object started, final Level level, final Solver.Engine requested, final SolveResult result) {
+		final SolveEvent event = (SolveEvent) started;
+		event.end();
+		if (event.shouldCommit()) {
+			final SolverMetrics.Snapshot metrics = result.getMetrics();
+			event.level = level.contentHash();
+			event.engine = result.getEngine().name();
+			event.requested = requested.name();
+			event.length = result.getBest() == null ? 0 : result.getBest().size();
+			event.abortReason = result.getAbortReason();
+			event.expansions = metrics.getExpansions();
+			event.duplicates = metrics.getDuplicates();
+			event.copies = metrics.getCopies();
+			event.slideSteps = metrics.getSlideSteps();
+			event.peakVisited = metrics.getPeakVisited();
+			event.maxDepth = metrics.getMaxDepth();
+			event.branching = metrics.getBranchingFactor();
+			event.commit();
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+package de.engehausen.boxitus;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import de.engehausen.boxitus.Solver.Engine;
+import de.engehausen.boxitus.Solver.Move;
+
+/**
+ * The outcome of a budgeted run of the solver: the solutions found so far,
+ * what is known about their quality and statistics of the search.
+ */
+public class SolveResult {
+
+	private final Engine engine;
+	private final List<SolutionPath> solutions;
+	private final boolean optimal;
+	private final boolean unsolvable;
+	private final String abortReason;
+	private final SolverMetrics.Snapshot metrics;
+	private final long time;
+	private final boolean cached;
+
+	/**
+	 * Creates the result.
+	 * @param anEngine the engine which produced the result, must not be {@code null}
+	 * @param found the solutions found, shortest first, must not be {@code null}
+	 * @param provenOptimal whether the first solution is known to be a shortest one
+	 * @param provenUnsolvable whether the search was complete without finding a solution
+	 * @param reason the reason the search was aborted, {@code null} if it was not aborted
+	 * @param statistics the metrics of the search, must not be {@code null}
+	 * @param millis the time spent in milliseconds
+	 * @param fromCache whether the solutions were taken from the solution cache
+	 */
+	public SolveResult(final Engine anEngine, final List<SolutionPath> found, final boolean provenOptimal, final boolean provenUnsolvable, final String reason, final SolverMetrics.Snapshot statistics, final long millis, final boolean fromCache) {
+		engine = anEngine;
+		solutions = found;
+		optimal = provenOptimal;
+		unsolvable = provenUnsolvable;
+		abortReason = reason;
+		metrics = statistics;
+		time = millis;
+		cached = fromCache;
+	}
+
+	/**
+	 * Returns the engine which produced the result. This is not the engine
+	 * of the solver if it had to switch engines because the heap was short.
+	 * @return the engine, never {@code null}
+	 */
+	public Engine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Returns the best solution found.
+	 * @return the shortest solution found, or {@code null} if none was found
+	 */
+	public SolutionPath getBest() {
+		return solutions.isEmpty() ? null : solutions.get(0);
+	}
+
+	/**
+	 * Returns all solutions found in their compact form.
+	 * @return the solutions, shortest first, never {@code null}
+	 */
+	public List<SolutionPath> getPaths() {
+		return solutions;
+	}
+
+	/**
+	 * Returns all solutions found, replaying them to restore the level states of the moves.
+	 * @return the solutions, shortest first, never {@code null}
+	 */
+	public List<List<Move>> getSolutions() {
+		return solutions
+			.stream()
+			.map(SolutionPath::moves)
+			.collect(Collectors.toList());
+	}
+
+	/**
+	 * Returns whether the best solution is known to be a shortest solution.
+	 * @return {@code true} if no shorter solution exists
+	 */
+	public boolean isProvenOptimal() {
+		return optimal;
+	}
+
+	/**
+	 * Returns whether the search was complete without finding a solution.
+	 * Note that the solver does not model time-dependent actions, so such
+	 * levels may still be solvable in the game.
+	 * @return {@code true} if the solver cannot solve the level
+	 */
+	public boolean isProvenUnsolvable() {
+		return unsolvable;
+	}
+
+	/**
+	 * Returns why the search was aborted.
+	 * @return the reason, or {@code null} if the search was complete
+	 */
+	public String getAbortReason() {
+		return abortReason;
+	}
+
+	/**
+	 * Returns the metrics of the search.
+	 * @return the metrics, all zero for cached results, never {@code null}
+	 */
+	public SolverMetrics.Snapshot getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the time spent.
+	 * @return the time spent in milliseconds
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns whether the solutions were taken from the solution cache.
+	 * @return {@code true} if no search was performed
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		final SolutionPath best = getBest();
+		sb.append(best == null ? "no solution" : best.size() + " moves");
+		if (optimal) {
+			sb.append(", optimal");
+		}
+		if (unsolvable) {
+			sb.append(", unsolvable");
+		}
+		if (abortReason != null) {
+			sb.append(", ").append(abortReason);
+		}
+		if (cached) {
+			sb.append(", cached");
+		} else {
+			sb.append(", ").append(metrics.getExpansions()).append(" expansions");
+		}
+		return sb.append(" (").append(time).append("ms)").toString();
+	}
+
+}
@@ -1,6 +1,5 @@
 package de.engehausen.boxitus;
 
-import java.awt.Point;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -9,7 +8,12 @@ import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -22,21 +26,126 @@ import de.engehausen.boxitus.Solver.Move.Direction;
  * It also uses heavy recursion and may go out of memory on technically solvable levels.
  */
 public class Solver {
-	
+
+	/**
+	 * The search strategies of the solver. The engines finding the shortest
+	 * solution solve static levels with a {@link BidirectionalSearch}.
+	 */
+	public enum Engine {
+		/** recursive depth-first search, the original strategy of the solver */
+		DEPTH_FIRST(1),
+		/**
+		 * uniform-cost search over the events changing the level state, with a
+		 * reachability pass over the resting cells of each state; finds the shortest solution
+		 */
+		HIERARCHICAL(2),
+		/**
+		 * iterative deepening A* search with a transposition table of fixed size;
+		 * finds the shortest solution in memory independent of the size of the level
+		 */
+		ITERATIVE_DEEPENING(2);
+
+		private final int version;
+
+		Engine(final int aVersion) {
+			version = aVersion;
+		}
+
+		/**
+		 * Returns the version of the engine. The version must be increased
+		 * whenever a change to the engine can change its results, as
+		 * solutions are cached per engine version.
+		 * @return the version of the engine
+		 */
+		public int getVersion() {
+			return version;
+		}
+	}
+
+	/** a copy of the level to solve, the solutions refer to it */
 	private final Level root;
+	private final Engine engine;
+	private final SolutionCache cache;
+	private final SolverMetrics metrics;
+	private long tableSize;
+	private boolean governed;
 
 	/**
-	 * Creates the solver for the given level.
+	 * Creates the solver for the given level, using the depth-first engine.
 	 * @param level the level to solve, must not be {@code null}.
 	 */
 	public Solver(final Level level) {
-		if (level.playerPosition == null) {
+		this(level, Engine.DEPTH_FIRST);
+	}
+
+	/**
+	 * Creates the solver for the given level.
+	 * @param level the level to solve, must not be {@code null}.
+	 * @param anEngine the search strategy to use, must not be {@code null}.
+	 */
+	public Solver(final Level level, final Engine anEngine) {
+		this(level, anEngine, null);
+	}
+
+	/**
+	 * Creates the solver for the given level, consulting the given cache
+	 * before searching for solutions. The solver works on a copy of the level,
+	 * so the level may be changed afterwards.
+	 * @param level the level to solve, must not be {@code null}.
+	 * @param anEngine the search strategy to use, must not be {@code null}.
+	 * @param solutionCache the cache of solutions, may be {@code null}.
+	 */
+	public Solver(final Level level, final Engine anEngine, final SolutionCache solutionCache) {
+		if (level.playerPosition == Level.NONE) {
 			throw new IllegalStateException("player starting position required");
 		}
-		if (level.exitPosition == null) {
+		if (level.exitPosition == Level.NONE) {
 			throw new IllegalStateException("exit portal position required");
 		}
-		root = level;
+		root = new Level(level);
+		engine = anEngine;
+		cache = solutionCache;
+		tableSize = TranspositionTable.getDefaultSize();
+		governed = true;
+		metrics = new SolverMetrics();
+	}
+
+	/**
+	 * Returns the search strategy of the solver.
+	 * @return the search strategy, never {@code null}
+	 */
+	public Engine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Returns the metrics of the current or last run of the solver. They may be
+	 * polled from other threads while the solver runs.
+	 * @return the metrics, never {@code null}
+	 */
+	public SolverMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the memory to use for the transposition table of the
+	 * iterative deepening engine. The table never uses more than
+	 * an eighth of the maximum heap.
+	 * @param bytes the size of the table in bytes
+	 */
+	public void setTableSize(final long bytes) {
+		tableSize = bytes;
+	}
+
+	/**
+	 * Sets whether the solver watches the heap while solving. When the heap
+	 * becomes short the transposition table is shrunk, other engines switch to
+	 * the iterative deepening engine and finally solving stops with the
+	 * solutions found so far. This is enabled by default.
+	 * @param enabled {@code true} to watch the heap
+	 */
+	public void setGoverned(final boolean enabled) {
+		governed = enabled;
 	}
 
 	/**
@@ -47,34 +156,179 @@ public class Solver {
 	 * Note this does <em>not</em> return <em>all</em> possible solutions.
 	 */
 	public List<List<Move>> solve(final Predicate<Void> control) {
-		final List<List<Move>> solutions = new ArrayList<>();
-		final Deque<Move> queue = new ArrayDeque<>();
-		solve(control, queue, new StatefulLevel(root, true), root.playerPosition, null, new HashMap<>(), solutions);
+		return solve(new SolveBudget(0, 0, 0, control)).getSolutions();
+	}
+
+	/**
+	 * Attempts to solve the given level within the given budget. If the budget
+	 * is exceeded the solutions found so far are returned.
+	 * @param budget the budget of the run, must not be {@code null}
+	 * @return the result, never {@code null}
+	 */
+	public SolveResult solve(final SolveBudget budget) {
+		budget.start();
+		metrics.start();
+		final Object event = SolverMetrics.JFR ? SolveEvent.start() : null;
+		final SolveResult result = run(budget);
+		if (event != null) {
+			SolveEvent.finish(event, root, engine, result);
+		}
+		return result;
+	}
+
+	private SolveResult run(final SolveBudget budget) {
+		if (cache != null) {
+			final List<SolutionPath> cached = fromCache();
+			if (cached != null) {
+				metrics.stop();
+				return new SolveResult(engine, cached, engine != Engine.DEPTH_FIRST && !cached.isEmpty(), engine != Engine.DEPTH_FIRST && cached.isEmpty(), null, metrics.snapshot(), budget.getElapsed(), true);
+			}
+		}
+		final List<SolutionPath> solutions = new ArrayList<>();
+		// static levels are solved bidirectionally by the shortest solution engines, without analysis
+		final SlideAnalysis analysis = engine != Engine.DEPTH_FIRST && BidirectionalSearch.isStatic(root) ? null : new SlideAnalysis(root);
+		Engine used = engine;
+		String abortReason;
+		try (final SolverGovernor governor = governed ? new SolverGovernor(metrics::getPeakVisited) : null) {
+			final Governance governance = new Governance(budget, governor);
+			search(engine, governance, analysis, solutions);
+			if (governance.fallback) {
+				// the heap is short, continue with the engine using a fixed amount of memory
+				used = Engine.ITERATIVE_DEEPENING;
+				governance.fallback = false;
+				search(used, governance, analysis, solutions);
+			}
+			abortReason = budget.getExceeded() != null ? budget.getExceeded() : governance.reason;
+		}
+		metrics.stop();
 		solutions.sort((a, b) -> a.size() - b.size());
-		return solutions;
+		final boolean complete = abortReason == null;
+		if (cache != null && complete && used == engine) {
+			// only complete searches are worth remembering
+			cache.put(root, engine, solutions
+				.stream()
+				.map(SolutionPath::directions)
+				.collect(Collectors.toList())
+			);
+		}
+		// the uniform-cost and iterative deepening searches only stop early on the shortest solution
+		final boolean optimal = used != Engine.DEPTH_FIRST && complete && !solutions.isEmpty();
+		// the depth-first search is not exhaustive and proves neither
+		final boolean unsolvable = used != Engine.DEPTH_FIRST && complete && solutions.isEmpty();
+		return new SolveResult(used, solutions, optimal, unsolvable, abortReason, metrics.snapshot(), budget.getElapsed(), false);
 	}
 
-	protected void solve(final Predicate<Void> control, final Deque<Move> queue, final StatefulLevel level, final Point position, final Move.Direction from, final Map<VisitInfo, Deque<Direction>> visited, final List<List<Move>> solutions) {
-		if (!control.test(null) ||
-			position.x < 0 || position.x >= Level.WIDTH ||
-			position.y < 0 || position.y >= Level.HEIGHT) {
+	private void search(final Engine strategy, final Governance governance, final SlideAnalysis analysis, final List<SolutionPath> solutions) {
+		if (analysis == null) {
+			final BidirectionalSearch bidirectional = new BidirectionalSearch(root);
+			bidirectional.setMetrics(metrics);
+			final List<Direction> direct = bidirectional.search(governance);
+			if (direct != null) {
+				solutions.add(new SolutionPath(root, direct));
+			}
 			return;
 		}
-		final TileType levelTile = level.at(position.x, position.y);
-		if (TileType.Portal.equals(levelTile) || TileType.PortalBombless.equals(levelTile)) {
+		switch (strategy) {
+		case HIERARCHICAL:
+			final HierarchicalSearch hierarchical = new HierarchicalSearch(root, analysis);
+			hierarchical.setMetrics(metrics);
+			final List<Direction> shortest = hierarchical.search(governance);
+			if (shortest != null) {
+				solutions.add(new SolutionPath(root, shortest));
+			}
+			break;
+		case ITERATIVE_DEEPENING:
+			governance.table = new TranspositionTable(Math.min(tableSize, Runtime.getRuntime().maxMemory() / 8));
+			final IterativeDeepeningSearch deepening = new IterativeDeepeningSearch(root, analysis, governance.table);
+			deepening.setMetrics(metrics);
+			final List<Direction> found = deepening.search(governance);
+			if (found != null) {
+				solutions.add(new SolutionPath(root, found));
+			}
+			break;
+		case DEPTH_FIRST:
+		default:
+			final Deque<Move> queue = new ArrayDeque<>();
+			final StatefulLevel start = new StatefulLevel(root, true);
+			start.setMetrics(metrics);
+			solve(governance, analysis, queue, start, root.playerPosition, null, new HashMap<>(), solutions);
+			break;
+		}
+	}
+
+	/**
+	 * Enumerates the solutions of the level lazily, shortest first. Solutions are
+	 * only searched for when consumed, so e.g. {@code solutions(control).limit(5)}
+	 * only pays for the five shortest solutions. Solutions never rest twice on the
+	 * same cell in the same level state. The solution cache is not used.
+	 * @param control a control predicate which can be used to abort the computation,
+	 * must not be {@code null}; the stream ends if it returns {@code false}
+	 * @return the sequential stream of distinct solutions, in non-decreasing length
+	 */
+	public Stream<List<Direction>> solutions(final Predicate<Void> control) {
+		return StreamSupport.stream(
+			Spliterators.spliteratorUnknownSize(
+				new HierarchicalSearch(root, new SlideAnalysis(root)).solutions(control),
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL
+			),
+			false
+		);
+	}
+
+	/**
+	 * Replays the given directions on the level.
+	 * @param directions the directions to move the player in, must not be {@code null}
+	 * @return the moves, or {@code null} if the directions do not solve the level
+	 */
+	public List<Move> replay(final List<Direction> directions) {
+		return new SolutionPath(root, directions).moves();
+	}
+
+	private List<SolutionPath> fromCache() {
+		final List<List<Direction>> cached = cache.get(root, engine);
+		if (cached == null) {
+			return null;
+		}
+		final List<SolutionPath> result = new ArrayList<>(cached.size());
+		for (List<Direction> directions : cached) {
+			final SolutionPath path = new SolutionPath(root, directions);
+			if (path.moves() == null) {
+				// not a solution (anymore?), ignore the cache
+				return null;
+			}
+			result.add(path);
+		}
+		return result;
+	}
+
+	protected void solve(final Predicate<Void> control, final SlideAnalysis analysis, final Deque<Move> queue, final StatefulLevel level, final int position, final Move.Direction from, final Map<VisitInfo, Deque<Direction>> visited, final List<SolutionPath> solutions) {
+		if (!control.test(null)) {
+			return;
+		}
+		final TileType levelTile = level.at(Level.x(position), Level.y(position));
+		if (isExit(levelTile)) {
 			addSolution(levelTile, level, queue, solutions);
 			return;
 		}
 		final VisitInfo info = new VisitInfo(position, from, level);
-		final Deque<Direction> candidates = visited.computeIfAbsent(info, any -> new ArrayDeque<>(Move.Direction.asList()));
+		Deque<Direction> candidates = visited.get(info);
+		if (candidates == null) {
+			candidates = new ArrayDeque<>(Move.Direction.asList());
+			visited.put(info, candidates);
+			metrics.visited(visited.size());
+		} else {
+			metrics.duplicate();
+		}
+		metrics.expanded(queue.size());
 		final List<Direction> restore = new ArrayList<>(candidates);
 		while (!candidates.isEmpty()) {
 			final Direction nextDirection = candidates.removeLast();
 			queue.addLast(new Move(nextDirection, position, level));
-			final Point nextPosition = new Point(position);
+			final Position nextPosition = new Position(position);
 			final StatefulLevel next = level.move(nextPosition, nextDirection);
-			if (next != null) {
-				solve(control, queue, next, nextPosition, nextDirection, visited, solutions);
+			if (next != null && !analysis.isDead(nextPosition.get())) {
+				metrics.successor();
+				solve(control, analysis, queue, next, nextPosition.get(), nextDirection, visited, solutions);
 			}
 			queue.removeLast();
 		}
@@ -82,20 +336,32 @@ public class Solver {
 		return;
 	}
 
-	private void addSolution(final TileType tile, final StatefulLevel level, final Deque<Move> queue, final List<List<Move>> solutions) {
-		if (level.hasSensors()) {
+	private void addSolution(final TileType tile, final StatefulLevel level, final Deque<Move> queue, final List<SolutionPath> solutions) {
+		if (!isSolved(tile, level)) {
 			return;
 		}
-		if (TileType.PortalBombless.equals(tile) && level.hasBombs()) {
-			// not a valid solution, all bombs must have been cleared
-			return;
+		// only record shorter solutions
+		if (solutions.isEmpty() || solutions.get(solutions.size() - 1).size() > queue.size()) {
+			// keep the directions only, the level states of the moves would pin every intermediate board
+			final byte[] directions = new byte[queue.size()];
+			int i = 0;
+			for (Move move : queue) {
+				directions[i++] = (byte) move.direction().ordinal();
+			}
+			solutions.add(new SolutionPath(root, directions));
 		}
-		if (solutions.isEmpty()) {
-			solutions.add(new ArrayList<>(queue));
-		} else if (solutions.get(solutions.size() - 1).size() > queue.size()) {
-			// only record shorter solutions
-			solutions.add(new ArrayList<>(queue));
+	}
+
+	static boolean isExit(final TileType tile) {
+		return TileType.Portal.equals(tile) || TileType.PortalBombless.equals(tile);
+	}
+
+	static boolean isSolved(final TileType exit, final StatefulLevel level) {
+		if (level.hasSensors()) {
+			return false;
 		}
+		// all bombs must have been cleared for the bombless portal
+		return !TileType.PortalBombless.equals(exit) || !level.hasBombs();
 	}
 
 	/**
@@ -115,23 +381,32 @@ public class Solver {
 			private static List<Direction> LIST = Collections.unmodifiableList(Arrays.asList(Direction.values()));
 
 			@JsonIgnore
-			private final Point dir;
+			private final int deltaX;
+			@JsonIgnore
+			private final int deltaY;
 			@JsonIgnore
 			private final int angle;
 
 			Direction(final int dx, final int dy, final int a) {
-				dir = new Point(dx, dy);
+				deltaX = dx;
+				deltaY = dy;
 				angle = a;
 			}
 
 			/**
-			 * Returns the direction as a point.
-			 * The coordinates will have values -1, 0 or 1
-			 * @return the point, and never {@code null}. Warning, this is a mutable object,
-			 * must not change the point values on it!
+			 * Returns the change of the x coordinate of a step in this direction.
+			 * @return -1, 0 or 1
+			 */
+			public int getDeltaX() {
+				return deltaX;
+			}
+
+			/**
+			 * Returns the change of the y coordinate of a step in this direction.
+			 * @return -1, 0 or 1
 			 */
-			public Point asPoint() {
-				return dir;
+			public int getDeltaY() {
+				return deltaY;
 			}
 
 			/**
@@ -151,15 +426,15 @@ public class Solver {
 			}
 
 			/**
-			 * Returns a direction enumeration from the given point.
-			 * @param vector the vector to turn into a direction (the coordinates must
-			 * only have values -1, 0 or 1).
+			 * Returns a direction enumeration from the given vector.
+			 * @param dx the change of the x coordinate, -1, 0 or 1
+			 * @param dy the change of the y coordinate, -1, 0 or 1
 			 * @return the direction or {@code null}
 			 */
-			public static Direction from(final Point vector) {
+			public static Direction from(final int dx, final int dy) {
 				// returns the direction, but only for the for "normal" vectors known...
 				for (Direction candidate : Direction.values()) {
-					if (candidate.dir.equals(vector)) {
+					if (candidate.deltaX == dx && candidate.deltaY == dy) {
 						return candidate;
 					}
 				}
@@ -169,19 +444,17 @@ public class Solver {
 		
 		private final Direction direction;
 		private final Level level;
-		private final int x;
-		private final int y;
+		private final int cell;
 
 		/**
 		 * Creates the move action.
 		 * @param direction the direction of the move, must not be {@code null}
-		 * @param current the current position, must not be {@code null}
+		 * @param current the cell index of the current position, see {@link Level#cell(int, int)}
 		 * @param level the level the move operates on, must not be {@code null}
 		 */
-		public Move(final Direction direction, final Point current, final Level level) {
+		public Move(final Direction direction, final int current, final Level level) {
 			this.direction = direction;
-			this.x = current.x;
-			this.y = current.y;
+			this.cell = current;
 			this.level = level;
 		}
 
@@ -195,14 +468,10 @@ public class Solver {
 
 		/**
 		 * Returns the position of the move.
-		 * @return the position of the move. This is a new object and may
-		 * be manipulated later on.
+		 * @return the cell index of the position the move starts from, see {@link Level#cell(int, int)}
 		 */
-		public Point getPosition() {
-			if (x >= 0) {
-				return new Point(x * 32, y * 32);
-			}
-			return null;
+		public int getCell() {
+			return cell;
 		}
 
 		/**
@@ -223,24 +492,72 @@ public class Solver {
 
 	}
 
+	/**
+	 * Control predicate of a run, applying the budget and stepping down
+	 * when the governor reports that the heap is short.
+	 */
+	private static class Governance implements Predicate<Void> {
+
+		/** the smallest size the transposition table is shrunk to */
+		private static final long MIN_TABLE_SIZE = 1L << 16;
+
+		private final SolveBudget budget;
+		private final SolverGovernor governor;
+		private TranspositionTable table;
+		private int warnings;
+		private boolean fallback;
+		private String reason;
+
+		public Governance(final SolveBudget aBudget, final SolverGovernor aGovernor) {
+			budget = aBudget;
+			governor = aGovernor;
+		}
+
+		@Override
+		public boolean test(final Void ignored) {
+			if (reason != null || fallback || !budget.test(ignored)) {
+				return false;
+			}
+			if (governor == null) {
+				return true;
+			}
+			final int current = governor.getWarnings();
+			if (current != warnings || governor.isCritical()) {
+				warnings = current;
+				if (table == null) {
+					// give up the current engine and its memory first
+					fallback = true;
+					governor.reset();
+					return false;
+				}
+				if (table.getSize() > MIN_TABLE_SIZE) {
+					table.resize(governor.isCritical() ? MIN_TABLE_SIZE : table.getSize() / 2);
+					governor.reset();
+				} else if (governor.isCritical()) {
+					reason = "heap exhausted";
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
 	private static class VisitInfo {
 
-		private final int x;
-		private final int y;
+		private final int cell;
 		private final Move.Direction direction;
 		private final Integer levelID;
 		private final int hc;
 
-		public VisitInfo(final Point p, final Move.Direction dir, final Level l) {
-			x = p.x;
-			y = p.y;
+		public VisitInfo(final int position, final Move.Direction dir, final Level l) {
+			cell = position;
 			direction = dir;
 			levelID = l.getUniqueIdentifier();
 			final int prime = 53;
 			int result = 1;
 			result = prime * result + levelID.hashCode();
-			result = prime * result + x;
-			result = prime * result + y;
+			result = prime * result + cell;
 			if (dir != null) {
 				result += dir.hashCode();
 			}
@@ -262,7 +579,7 @@ public class Solver {
 			}
 			final VisitInfo other = (VisitInfo) obj;
 			// identity comparison on level unique ID...
-			return levelID == other.levelID && x == other.x && y == other.y && direction == other.direction;
+			return levelID == other.levelID && cell == other.cell && direction == other.direction;
 		}
 
 	}
@@ -0,0 +1,174 @@
+package de.engehausen.boxitus;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Watches the heap while a solver runs. The heap pools report through
+ * notifications when the memory still in use after a garbage collection
+ * exceeds {@value #HIGH} of their maximum; the solver then steps down to
+ * cheaper strategies. Once {@value #CRITICAL} of a pool remain in use after
+ * a collection the state is critical and the solver should stop.
+ * <p>
+ * The thresholds of the pools are set while at least one governor is open and
+ * restored when the last one is closed. The notifications are not specific to
+ * a solver; each one is passed to the governor of the solver with the largest
+ * footprint only, so concurrent solvers do not all step down at once.
+ */
+public class SolverGovernor implements AutoCloseable {
+
+	/** the fraction of a heap pool in use after a collection which is reported */
+	public static final double HIGH = 0.75;
+	/** the fraction of a heap pool in use after a collection at which solving must stop */
+	public static final double CRITICAL = 0.9;
+
+	/** the open governors, also guards the thresholds */
+	private static final List<SolverGovernor> GOVERNORS = new ArrayList<>();
+	/** the thresholds of the watched pools before the first governor was opened, by pool name */
+	private static final Map<String, Long> THRESHOLDS = new HashMap<>();
+	private static final NotificationListener LISTENER = SolverGovernor::handleNotification;
+
+	private final LongSupplier footprint;
+	private final AtomicInteger warnings;
+	private volatile boolean critical;
+
+	/**
+	 * Creates the governor and starts listening to the heap pools.
+	 * It must be closed when the solver is done.
+	 * @param solverFootprint the size of the solver watched, e.g. the number of
+	 * nodes it remembers; must not be {@code null}
+	 */
+	public SolverGovernor(final LongSupplier solverFootprint) {
+		footprint = solverFootprint;
+		warnings = new AtomicInteger();
+		synchronized (GOVERNORS) {
+			if (GOVERNORS.isEmpty()) {
+				watch();
+			}
+			GOVERNORS.add(this);
+		}
+	}
+
+	private static void watch() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			// only the pools of long-lived objects, the young pools are always full before a collection
+			if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() && pool.isCollectionUsageThresholdSupported()) {
+				final long max = pool.getUsage().getMax();
+				if (max > 0) {
+					THRESHOLDS.put(pool.getName(), Long.valueOf(pool.getCollectionUsageThreshold()));
+					pool.setCollectionUsageThreshold((long) (HIGH * max));
+				}
+			}
+		}
+		emitter().addNotificationListener(LISTENER, null, null);
+	}
+
+	private static void unwatch() {
+		try {
+			emitter().removeNotificationListener(LISTENER);
+		} catch (ListenerNotFoundException e) {
+			// already removed
+		}
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			final Long threshold = THRESHOLDS.remove(pool.getName());
+			if (threshold != null) {
+				pool.setCollectionUsageThreshold(threshold.longValue());
+			}
+		}
+	}
+
+	private static NotificationEmitter emitter() {
+		return (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+	}
+
+	private static void handleNotification(final Notification notification, final Object handback) {
+		if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+			final MemoryNotificationInfo info = MemoryNotificationInfo.from((CompositeData) notification.getUserData());
+			synchronized (GOVERNORS) {
+				if (!THRESHOLDS.containsKey(info.getPoolName())) {
+					return;
+				}
+			}
+			final MemoryUsage usage = info.getUsage();
+			report(usage.getMax() > 0 && usage.getUsed() >= CRITICAL * usage.getMax());
+		}
+	}
+
+	/**
+	 * Reports a short heap to the governor of the solver with the largest footprint.
+	 * @param criticalState {@code true} if the heap is nearly exhausted
+	 */
+	static void report(final boolean criticalState) {
+		SolverGovernor largest = null;
+		long largestFootprint = Long.MIN_VALUE;
+		synchronized (GOVERNORS) {
+			for (SolverGovernor governor : GOVERNORS) {
+				final long size = governor.footprint.getAsLong();
+				if (size > largestFootprint) {
+					largest = governor;
+					largestFootprint = size;
+				}
+			}
+		}
+		if (largest != null) {
+			if (criticalState) {
+				largest.critical = true;
+			}
+			largest.warnings.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the number of times the heap was reported to be short so far.
+	 * @return the number of warnings
+	 */
+	public int getWarnings() {
+		return warnings.get();
+	}
+
+	/**
+	 * Returns whether the heap was nearly exhausted after a collection
+	 * since the last {@link #reset()}.
+	 * @return {@code true} if the solver must release memory or stop
+	 */
+	public boolean isCritical() {
+		return critical;
+	}
+
+	/**
+	 * Clears the critical state after the solver released memory. It becomes
+	 * critical again if the next collection still leaves too little heap.
+	 */
+	public void reset() {
+		critical = false;
+	}
+
+	/**
+	 * Stops watching the solver; the last governor closed stops listening
+	 * to the heap pools and restores their thresholds.
+	 */
+	@Override
+	public void close() {
+		synchronized (GOVERNORS) {
+			if (GOVERNORS.remove(this) && GOVERNORS.isEmpty()) {
+				unwatch();
+			}
+		}
+	}
+
+}
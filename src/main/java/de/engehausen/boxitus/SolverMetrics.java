@@ -0,0 +1,289 @@
+package de.engehausen.boxitus;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the work done by a solver run. The counters are updated by the
+ * search engines and the level states they create, and may be polled from
+ * other threads through {@link #snapshot()} while the solver runs.
+ */
+public class SolverMetrics {
+
+	/** the number of buckets of the depth histogram, deeper expansions are counted in the last one */
+	public static final int DEPTHS = 64;
+
+	/** whether Java Flight Recorder events can be emitted in this JVM */
+	static final boolean JFR = isFlightRecorderAvailable();
+
+	private final LongAdder expansions;
+	private final LongAdder duplicates;
+	private final LongAdder successors;
+	private final LongAdder copies;
+	private final LongAdder slideSteps;
+	private final LongAccumulator visited;
+	private final LongAdder[] depths;
+	private volatile long started;
+	private volatile long stopped;
+
+	/**
+	 * Creates the metrics with all counters at zero.
+	 */
+	public SolverMetrics() {
+		expansions = new LongAdder();
+		duplicates = new LongAdder();
+		successors = new LongAdder();
+		copies = new LongAdder();
+		slideSteps = new LongAdder();
+		visited = new LongAccumulator(Math::max, 0);
+		depths = new LongAdder[DEPTHS];
+		for (int i = 0; i < DEPTHS; i++) {
+			depths[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Resets all counters and starts the clock.
+	 */
+	public void start() {
+		expansions.reset();
+		duplicates.reset();
+		successors.reset();
+		copies.reset();
+		slideSteps.reset();
+		visited.reset();
+		for (LongAdder depth : depths) {
+			depth.reset();
+		}
+		stopped = 0;
+		started = System.nanoTime();
+	}
+
+	/**
+	 * Stops the clock.
+	 */
+	public void stop() {
+		stopped = System.nanoTime();
+	}
+
+	/**
+	 * Counts the expansion of a search node, i.e. the generation of its successors.
+	 * @param depth the depth of the node
+	 */
+	public void expanded(final int depth) {
+		expansions.increment();
+		depths[Math.min(depth, DEPTHS - 1)].increment();
+	}
+
+	/**
+	 * Counts a node which was not expanded as it was reached before.
+	 */
+	public void duplicate() {
+		duplicates.increment();
+	}
+
+	/**
+	 * Counts a successor generated by an expansion.
+	 */
+	public void successor() {
+		successors.increment();
+	}
+
+	/**
+	 * Counts a copy of a level state.
+	 */
+	public void copied() {
+		copies.increment();
+	}
+
+	/**
+	 * Counts the cells walked by a slide.
+	 * @param steps the number of cells
+	 */
+	public void slid(final int steps) {
+		slideSteps.add(steps);
+	}
+
+	/**
+	 * Reports the number of nodes currently remembered by the search, e.g. the size
+	 * of its visited set; the peak is kept.
+	 * @param size the number of nodes
+	 */
+	public void visited(final long size) {
+		visited.accumulate(size);
+	}
+
+	/**
+	 * Returns the peak number of nodes remembered by the search so far.
+	 * @return the peak size of the visited set
+	 */
+	public long getPeakVisited() {
+		return visited.get();
+	}
+
+	/**
+	 * Returns the current values of the counters.
+	 * @return the snapshot, never {@code null}
+	 */
+	public Snapshot snapshot() {
+		final long[] histogram = new long[DEPTHS];
+		for (int i = 0; i < DEPTHS; i++) {
+			histogram[i] = depths[i].sum();
+		}
+		final long end = stopped;
+		return new Snapshot(
+			expansions.sum(),
+			duplicates.sum(),
+			successors.sum(),
+			copies.sum(),
+			slideSteps.sum(),
+			visited.get(),
+			histogram,
+			started == 0 ? 0 : (end == 0 ? System.nanoTime() : end) - started
+		);
+	}
+
+	private static boolean isFlightRecorderAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException|LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * The values of the counters at one point in time.
+	 */
+	public static class Snapshot {
+
+		private final long expansions;
+		private final long duplicates;
+		private final long successors;
+		private final long copies;
+		private final long slideSteps;
+		private final long peakVisited;
+		private final long[] depths;
+		private final long nanos;
+
+		/**
+		 * Creates the snapshot.
+		 * @param expanded the number of nodes expanded
+		 * @param duplicated the number of nodes not expanded as they were reached before
+		 * @param generated the number of successors generated
+		 * @param copied the number of level state copies
+		 * @param walked the number of cells walked by slides
+		 * @param peak the greatest number of nodes remembered by the search
+		 * @param histogram the number of expansions per depth, must not be {@code null}
+		 * @param elapsed the time elapsed in nanoseconds
+		 */
+		public Snapshot(final long expanded, final long duplicated, final long generated, final long copied, final long walked, final long peak, final long[] histogram, final long elapsed) {
+			expansions = expanded;
+			duplicates = duplicated;
+			successors = generated;
+			copies = copied;
+			slideSteps = walked;
+			peakVisited = peak;
+			depths = histogram;
+			nanos = elapsed;
+		}
+
+		/**
+		 * Returns the number of nodes expanded.
+		 * @return the number of expansions
+		 */
+		public long getExpansions() {
+			return expansions;
+		}
+
+		/**
+		 * Returns the number of nodes not expanded as they were reached before.
+		 * @return the number of duplicate hits
+		 */
+		public long getDuplicates() {
+			return duplicates;
+		}
+
+		/**
+		 * Returns the number of level state copies made.
+		 * @return the number of copies
+		 */
+		public long getCopies() {
+			return copies;
+		}
+
+		/**
+		 * Returns the number of cells walked by all slides.
+		 * @return the number of slide steps
+		 */
+		public long getSlideSteps() {
+			return slideSteps;
+		}
+
+		/**
+		 * Returns the greatest number of nodes remembered by the search at once.
+		 * @return the peak size of the visited set
+		 */
+		public long getPeakVisited() {
+			return peakVisited;
+		}
+
+		/**
+		 * Returns the number of expansions per depth.
+		 * @return the histogram with {@link SolverMetrics#DEPTHS} buckets, never {@code null}
+		 */
+		public long[] getDepthHistogram() {
+			return depths.clone();
+		}
+
+		/**
+		 * Returns the greatest depth expanded.
+		 * @return the greatest depth, capped at the last bucket of the histogram
+		 */
+		public int getMaxDepth() {
+			for (int i = DEPTHS; --i >= 0; ) {
+				if (depths[i] > 0) {
+					return i;
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Returns the average number of successors per expansion.
+		 * @return the branching factor
+		 */
+		public double getBranchingFactor() {
+			return expansions == 0 ? 0 : (double) successors / expansions;
+		}
+
+		/**
+		 * Returns the average time per expansion.
+		 * @return the time per expansion in nanoseconds
+		 */
+		public double getNanosPerExpansion() {
+			return expansions == 0 ? 0 : (double) nanos / expansions;
+		}
+
+		/**
+		 * Returns the time elapsed.
+		 * @return the time elapsed in nanoseconds
+		 */
+		public long getElapsedNanos() {
+			return nanos;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return String.format(
+				"%d expansions, %d duplicates, %d copies, %d slide steps, %d peak visited, max depth %d, branching %.2f, %.0fns/expansion",
+				expansions, duplicates, copies, slideSteps, peakVisited, getMaxDepth(), getBranchingFactor(), getNanosPerExpansion()
+			);
+		}
+
+	}
+
+}
@@ -0,0 +1,194 @@
+package de.engehausen.boxitus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.engehausen.boxitus.Solver.Engine;
+
+/**
+ * A small HTTP service solving levels on a shared thread pool. Results are cached
+ * by the content hash of the level, so a level is only solved once; concurrent
+ * requests for the same level wait for the same computation. Only the
+ * {@value #CAPACITY} results used last are kept, aborted runs are not kept.
+ * <p>
+ * The service accepts {@code POST /solve} requests with a JSON array of level rows
+ * (as copied by the editor) and an optional {@code engine} query parameter. It
+ * responds with a JSON object holding the {@code hash} of the level, the
+ * {@code status} of the run, the shortest {@code solution} found and whether the
+ * result was {@code cached}. The status is {@code solved}, {@code unsolvable} if
+ * the engine proved there is no solution or {@code unsolved} if it found none
+ * without proof. A run which was aborted, e.g. because the heap became short,
+ * is answered with status {@code 503}, the status {@code aborted} and the
+ * {@code reason}.
+ */
+public class SolverService {
+
+	private static final String SOLVE_PATH = "/solve";
+	private static final String ENGINE_PARAMETER = "engine=";
+	/** the number of results kept */
+	private static final int CAPACITY = 1024;
+
+	private final HttpServer server;
+	private final ExecutorService solvers;
+	private final ExecutorService handlers;
+	private final Map<String, CompletableFuture<SolveResult>> cache;
+
+	/**
+	 * Creates the service.
+	 * @param port the port to listen on
+	 * @param threads the number of levels to solve in parallel
+	 * @throws IOException in case the server cannot be created
+	 */
+	public SolverService(final int port, final int threads) throws IOException {
+		solvers = Executors.newFixedThreadPool(Math.max(1, threads));
+		handlers = Executors.newCachedThreadPool();
+		cache = Collections.synchronizedMap(new LinkedHashMap<String, CompletableFuture<SolveResult>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, CompletableFuture<SolveResult>> eldest) {
+				return size() > CAPACITY;
+			}
+		});
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext(SOLVE_PATH, this::handle);
+		server.setExecutor(handlers);
+	}
+
+	/**
+	 * Starts the service.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops the service, aborting running computations.
+	 */
+	public void stop() {
+		server.stop(0);
+		handlers.shutdownNow();
+		solvers.shutdownNow();
+	}
+
+	/**
+	 * Returns the port the service listens on.
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Solves the given level, or returns the cached result. If the level is
+	 * currently being solved the pending computation is returned.
+	 * @param level the level to solve, must not be {@code null}
+	 * @param engine the engine to solve with, must not be {@code null}
+	 * @return the future result; an aborted result is not cached
+	 */
+	public CompletableFuture<SolveResult> solve(final Level level, final Engine engine) {
+		final String key = engine + ":" + level.contentHash();
+		final CompletableFuture<SolveResult> result = cache.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(
+			() -> new Solver(level, engine).solve(new SolveBudget(0, 0, 0, ignore -> !Thread.currentThread().isInterrupted())),
+			solvers
+		));
+		result.whenComplete((solved, error) -> {
+			if (error != null || solved.getAbortReason() != null) {
+				// do not remember failures, the next request tries again
+				cache.remove(key, result);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Handles a solve request.
+	 * @param exchange the request/response exchange, must not be {@code null}
+	 * @throws IOException in case of error
+	 */
+	protected void handle(final HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, 405, Collections.singletonMap("error", "POST expected"));
+				return;
+			}
+			final Level level;
+			final Engine engine;
+			try (final InputStream stream = exchange.getRequestBody()) {
+				final String[] rows = Levels.getObjectMapper().readValue(stream, String[].class);
+				if (rows.length != Level.HEIGHT || Arrays.stream(rows).anyMatch(row -> row == null || row.length() != Level.WIDTH)) {
+					throw new IllegalArgumentException(Level.HEIGHT + " rows of " + Level.WIDTH + " characters expected");
+				}
+				level = new Level(rows);
+				engine = engine(exchange.getRequestURI().getQuery());
+				// fail early for levels without player or exit
+				new Solver(level, engine);
+			} catch (IOException|IllegalArgumentException|IllegalStateException e) {
+				respond(exchange, 400, Collections.singletonMap("error", e.getMessage()));
+				return;
+			}
+			final String hash = level.contentHash();
+			final CompletableFuture<SolveResult> future = solve(level, engine);
+			final boolean cached = future.isDone();
+			final SolveResult solved = future.join();
+			final Map<String, Object> result = new LinkedHashMap<>();
+			result.put("hash", hash);
+			if (solved.getAbortReason() != null) {
+				result.put("status", "aborted");
+				result.put("reason", solved.getAbortReason());
+				respond(exchange, 503, result);
+				return;
+			}
+			final SolutionPath best = solved.getBest();
+			result.put("status", best != null ? "solved" : solved.isProvenUnsolvable() ? "unsolvable" : "unsolved");
+			result.put("solution", best == null ? Collections.emptyList() : best.directions());
+			result.put("cached", Boolean.valueOf(cached));
+			respond(exchange, 200, result);
+		} catch (CompletionException e) {
+			respond(exchange, 500, Collections.singletonMap("error", String.valueOf(e.getCause())));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private Engine engine(final String query) {
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				if (parameter.startsWith(ENGINE_PARAMETER)) {
+					return Engine.valueOf(parameter.substring(ENGINE_PARAMETER.length()));
+				}
+			}
+		}
+		return Engine.DEPTH_FIRST;
+	}
+
+	private void respond(final HttpExchange exchange, final int status, final Object body) throws IOException {
+		final byte[] bytes = Levels.getObjectMapper().writeValueAsBytes(body);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (final OutputStream stream = exchange.getResponseBody()) {
+			stream.write(bytes);
+		}
+	}
+
+	public static void main(final String... args) throws IOException {
+		final int port = args.length > 0 ? Integer.parseInt(args[0]) : 8088;
+		final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		final SolverService service = new SolverService(port, threads);
+		service.start();
+		System.err.println("solver service listening on port " + service.getPort() + ", POST level rows to " + SOLVE_PATH);
+	}
+
+}
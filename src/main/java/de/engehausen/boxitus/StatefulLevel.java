@@ -1,12 +1,12 @@
 package de.engehausen.boxitus;
 
-import java.awt.Point;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 import de.engehausen.boxitus.Solver.Move;
 import de.engehausen.boxitus.Solver.Move.Direction;
@@ -30,10 +30,12 @@ public class StatefulLevel extends Level {
 		)
 	);
 
-	private final Map<Point, TileType> delta;
-	private final Map<Point, Set<Direction>> sensors;
-	private final Map<Point, AtomicInteger> overlaps;
-	private final Point key;
+	private final Map<Integer, Set<Direction>> sensors;
+	private final Map<Integer, AtomicInteger> overlaps;
+	private TileType[] delta;
+	private long fingerprint;
+	private SolverMetrics metrics;
+	private int steps;
 
 	/**
 	 * Creates the level based on the given level.
@@ -42,9 +44,12 @@ public class StatefulLevel extends Level {
 	 */
 	public StatefulLevel(final Level level, final boolean process) {
 		super(level);
-		delta = new HashMap<>();
 		if (level instanceof StatefulLevel) {
 			final StatefulLevel parent = (StatefulLevel) level;
+			metrics = parent.metrics;
+			if (metrics != null) {
+				metrics.copied();
+			}
 			sensors = new HashMap<>();
 			// deep copy
 			parent
@@ -61,7 +66,6 @@ public class StatefulLevel extends Level {
 			sensors = new HashMap<>();
 			overlaps = new HashMap<>();
 		}
-		key = new Point();
 		if (process) {
 			for (int y = 0; y < HEIGHT; y++) {
 				for (int x = 0; x < WIDTH; x++) {
@@ -75,150 +79,171 @@ public class StatefulLevel extends Level {
 						addTrap(x + 1, y);
 						break;
 					case Sensor:
-						initSensor(new Point(x, y));
+						initSensor(x, y);
 					default:
 						break;
 					}
 				}
 			}
-			set(TileType.Empty, playerPosition.x, playerPosition.y);
+			set(TileType.Empty, x(playerPosition), y(playerPosition));
 		}
 	}
 
 	/**
 	 * Moves to the next resting position.
-	 * @param position the current player position (this method changes the position values)
+	 * @param position the current player position (this method changes the position to the resting position)
+	 * @param direction the direction to move in
+	 * @return the level state after the move, or {@code null} if the move ends the game;
+	 * the position is then {@link Level#NONE} if the player left the field.
+	 * Returns a copy of the level if a modification occured to it.
+	 */
+	public StatefulLevel move(final Position position, final Move.Direction direction) {
+		return move(position, direction, null);
+	}
+
+	/**
+	 * Moves to the next resting position, reporting the cells passed on the way.
+	 * @param position the current player position (this method changes the position to the resting position)
 	 * @param direction the direction to move in
+	 * @param trace a consumer receiving the index of each cell the player passes through,
+	 * not including the starting and the resting position; may be {@code null}.
 	 * @return the level state after the move, or {@code null} if the move ends the game.
 	 * Returns a copy of the level if a modification occured to it.
 	 */
-	public StatefulLevel move(final Point position, final Move.Direction direction) {
+	public StatefulLevel move(final Position position, final Move.Direction direction, final IntConsumer trace) {
+		if (metrics == null) {
+			return slide(position, direction, trace);
+		}
+		steps = 0;
+		try {
+			return slide(position, direction, trace);
+		} finally {
+			metrics.slid(steps);
+		}
+	}
+
+	/**
+	 * Sets the metrics counting the work done with this level state and its copies.
+	 * @param solverMetrics the metrics, may be {@code null}
+	 */
+	public void setMetrics(final SolverMetrics solverMetrics) {
+		metrics = solverMetrics;
+	}
+
+	private StatefulLevel slide(final Position position, final Move.Direction direction, final IntConsumer trace) {
 		StatefulLevel next = this;
-		final Point origin = new Point(position);
-		Point vector = direction.asPoint();
+		final int origin = position.get();
+		int x = x(origin);
+		int y = y(origin);
+		Direction vector = direction;
 		do {
-			position.translate(vector.x, vector.y);
-			if (position.x < 0 || position.x == WIDTH ||
-				position.y < 0 || position.y == HEIGHT) {
-				return null; // left the field
+			if (trace != null && cell(x, y) != origin) {
+				trace.accept(cell(x, y));
+			}
+			x += vector.getDeltaX();
+			y += vector.getDeltaY();
+			steps++;
+			if (x < 0 || x == WIDTH ||
+				y < 0 || y == HEIGHT) {
+				return leave(position);
 			}
-			switch (at(position.x, position.y)) {
+			switch (at(x, y)) {
 			case Wall:
 				// can't go there, stop
-				return stop(next, origin, position, vector);
+				return stop(next, origin, position, x - vector.getDeltaX(), y - vector.getDeltaY());
 			case Portal:
 			case PortalBombless:
 				// that's it!
+				position.set(cell(x, y));
 				return next;
 			case DeflectorTL:
-				if (vector.x == 1 || vector.y == 1) {
-					// can't go there, stop
-					return stop(next, origin, position, vector);
-				} else {
-					if (vector.x == - 1) {
-						vector = Move.Direction.Down.asPoint();
-					} else if (vector.y == -1) {
-						vector = Move.Direction.Right.asPoint();
-					}
-				}
-				break;
 			case DeflectorTR:
-				if (vector.x == -1 || vector.y == 1) {
-					// can't go there, stop
-					return stop(next, origin, position, vector);
-				} else {
-					if (vector.x == 1) {
-						vector = Move.Direction.Down.asPoint();
-					} else if (vector.y == -1) {
-						vector = Move.Direction.Left.asPoint();
-					}
-				}
-				break;
 			case DeflectorBR:
-				if (vector.x == -1 || vector.y == -1) {
-					// can't go there, stop
-					return stop(next, origin, position, vector);
-				} else {
-					if (vector.x == 1) {
-						vector = Move.Direction.Up.asPoint();
-					} else if (vector.y == 1) {
-						vector = Move.Direction.Left.asPoint();
-					}
-				}
-				break;
 			case DeflectorBL:
-				if (vector.x == 1 || vector.y == -1) {
+				final Direction deflected = deflect(at(x, y), vector);
+				if (deflected == null) {
 					// can't go there, stop
-					return stop(next, origin, position, vector);
-				} else {
-					if (vector.x == -1) {
-						vector = Move.Direction.Up.asPoint();
-					} else if (vector.y == 1) {
-						vector = Move.Direction.Right.asPoint();
-					}
+					return stop(next, origin, position, x - vector.getDeltaX(), y - vector.getDeltaY());
 				}
+				vector = deflected;
 				break;
 			case Bomb:
 				final StatefulLevel afterBomb = new StatefulLevel(this, false);
 				// remove the bomb
-				afterBomb.set(TileType.Empty, position.x, position.y); 
-				position.translate(-vector.x, -vector.y);
+				afterBomb.set(TileType.Empty, x, y);
+				position.set(cell(x - vector.getDeltaX(), y - vector.getDeltaY()));
 				return afterBomb;
 			case TrapLR:
 				final StatefulLevel afterLRTrap = new StatefulLevel(this, false);
-				while (TileType.TrapLR.equals(at(position.x, position.y))) {
-					afterLRTrap.removeTrap(position.x, position.y - 1);
-					afterLRTrap.set(TileType.Wall, position.x, position.y);
-					afterLRTrap.removeTrap(position.x, position.y + 1);
-					position.translate(vector.x, vector.y);
+				while (TileType.TrapLR.equals(at(x, y))) {
+					if (trace != null) {
+						trace.accept(cell(x, y));
+					}
+					afterLRTrap.removeTrap(x, y - 1);
+					afterLRTrap.set(TileType.Wall, x, y);
+					afterLRTrap.removeTrap(x, y + 1);
+					x += vector.getDeltaX();
+					y += vector.getDeltaY();
+					steps++;
+					if (x < 0 || x == WIDTH || y < 0 || y == HEIGHT) {
+						return leave(position);
+					}
 				}
-				final TileType exitTileLR = at(position.x, position.y);
-				if (OCCUPIABLE_AFTER_TRAP.contains(exitTileLR)) {
-					// move back and let the continueTrap handle the element
-					position.translate(-vector.x, -vector.y);
-				} else {
+				if (!OCCUPIABLE_AFTER_TRAP.contains(at(x, y))) {
 					return null;
 				}
-				return continueTrap(afterLRTrap, position, vector);
+				// move back and let the continueTrap handle the element
+				position.set(cell(x - vector.getDeltaX(), y - vector.getDeltaY()));
+				return continueTrap(afterLRTrap, position, vector, trace);
 			case TrapTB:
 				final StatefulLevel afterTBTrap = new StatefulLevel(this, false);
-				while (TileType.TrapTB.equals(at(position.x, position.y))) {
-					afterTBTrap.removeTrap(position.x - 1, position.y);
-					afterTBTrap.set(TileType.Wall, position.x, position.y);
-					afterTBTrap.removeTrap(position.x + 1, position.y);
-					position.translate(vector.x, vector.y);
+				while (TileType.TrapTB.equals(at(x, y))) {
+					if (trace != null) {
+						trace.accept(cell(x, y));
+					}
+					afterTBTrap.removeTrap(x - 1, y);
+					afterTBTrap.set(TileType.Wall, x, y);
+					afterTBTrap.removeTrap(x + 1, y);
+					x += vector.getDeltaX();
+					y += vector.getDeltaY();
+					steps++;
+					if (x < 0 || x == WIDTH || y < 0 || y == HEIGHT) {
+						return leave(position);
+					}
 				}
-				final TileType exitTileTB = at(position.x, position.y);
-				if (OCCUPIABLE_AFTER_TRAP.contains(exitTileTB)) {
-					// move back and let the continueTrap handle the element
-					position.translate(-vector.x, -vector.y);
-				} else {
+				if (!OCCUPIABLE_AFTER_TRAP.contains(at(x, y))) {
 					return null;
 				}
-				return continueTrap(afterTBTrap, position, vector);
+				// move back and let the continueTrap handle the element
+				position.set(cell(x - vector.getDeltaX(), y - vector.getDeltaY()));
+				return continueTrap(afterTBTrap, position, vector, trace);
 			case Wormhole:
-				position.setLocation(
-					wormholes.get(
-						(1 + wormholes.indexOf(position)) % wormholes.size()
-					)
-				);
+				final int wormhole = cell(x, y);
+				if (trace != null) {
+					trace.accept(wormhole);
+				}
+				final int other = otherWormhole(wormhole);
+				x = x(other);
+				y = y(other);
 				next = this;
 				break;
 			case Sensor:
 				// mark this direction as visited
-				final Direction currentDirection = Direction.from(vector);
-				if (!next.sensors.get(position).contains(currentDirection)) {
+				final Integer sensor = Integer.valueOf(cell(x, y));
+				if (!next.sensors.get(sensor).contains(vector)) {
+					position.set(sensor.intValue());
 					return null;
 				}
 				final StatefulLevel afterSensor = new StatefulLevel(this, false);
-				afterSensor.sensors.get(position).remove(currentDirection);
+				afterSensor.sensors.get(sensor).remove(vector);
+				afterSensor.fingerprint = 0;
 				// can't go there, stop
-				position.translate(-vector.x, -vector.y);
+				position.set(cell(x - vector.getDeltaX(), y - vector.getDeltaY()));
 				return afterSensor;
 			default:
 				break;
 			}
-		} while (!position.equals(origin));
+		} while (cell(x, y) != origin);
 		return null; // going in circles...
 	}
 
@@ -227,10 +252,13 @@ public class StatefulLevel extends Level {
 	 */
 	@Override
 	public TileType at(final int x, final int y) {
-		key.x = x;
-		key.y = y;
-		final TileType result = delta.get(key);
-		return result == null ? super.at(x, y) : result;
+		if (delta != null) {
+			final TileType result = delta[cell(x, y)];
+			if (result != null) {
+				return result;
+			}
+		}
+		return super.at(x, y);
 	}
 
 	/**
@@ -239,8 +267,65 @@ public class StatefulLevel extends Level {
 	@Override
 	public void set(final TileType tile, final int x, final int y) {
 		if (!tile.equals(at(x, y))) {
-			delta.put(new Point(x, y), tile);
+			if (delta == null) {
+				delta = new TileType[CELLS];
+			}
+			delta[cell(x, y)] = tile;
+			fingerprint = 0;
+		}
+	}
+
+	/**
+	 * Returns a hash of the level state, i.e. of all tiles and the
+	 * directions the sensors still need to be activated from.
+	 * Levels in the same state have the same fingerprint.
+	 * @return the fingerprint of the level state
+	 */
+	public long fingerprint() {
+		if (fingerprint == 0) {
+			// 64 bit FNV-1a over the tiles
+			long result = 0xcbf29ce484222325L;
+			for (int y = 0; y < HEIGHT; y++) {
+				for (int x = 0; x < WIDTH; x++) {
+					result = (result ^ at(x, y).ordinal()) * 0x100000001b3L;
+				}
+			}
+			long sensorHash = 0;
+			for (Map.Entry<Integer, Set<Direction>> entry : sensors.entrySet()) {
+				long mix = entry.getKey().intValue() * 0x9e3779b97f4a7c15L;
+				for (Direction direction : entry.getValue()) {
+					mix ^= 1L << (59 + direction.ordinal());
+				}
+				// independent of iteration order
+				sensorHash += mix * 0xbf58476d1ce4e5b9L;
+			}
+			result ^= sensorHash;
+			fingerprint = result == 0 ? 1 : result;
 		}
+		return fingerprint;
+	}
+
+	/**
+	 * Checks if the given level is in the same state as this level, i.e.
+	 * has the same tiles and sensor states.
+	 * @param other the level to compare with, must not be {@code null}
+	 * @return {@code true} if both levels are in the same state
+	 */
+	public boolean sameState(final StatefulLevel other) {
+		if (this == other) {
+			return true;
+		}
+		if (fingerprint() != other.fingerprint() || !sensors.equals(other.sensors)) {
+			return false;
+		}
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				if (at(x, y) != other.at(x, y)) {
+					return false;
+				}
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -252,9 +337,8 @@ public class StatefulLevel extends Level {
 	 * or exit position, {@code true} otherwise.
 	 */
 	public boolean normalTile(final int x, final int y) {
-		key.x = x;
-		key.y = y;
-		return !(key.equals(playerPosition) || key.equals(exitPosition));
+		final int cell = cell(x, y);
+		return cell != playerPosition && cell != exitPosition;
 	}
 
 	/**
@@ -282,9 +366,7 @@ public class StatefulLevel extends Level {
 	}
 
 	protected void removeTrap(final int x, final int y) {
-		key.x = x;
-		key.y = y;
-		final AtomicInteger counter = overlaps.get(key);
+		final AtomicInteger counter = overlaps.get(Integer.valueOf(cell(x, y)));
 		if (counter == null || counter.decrementAndGet() <= 0) {
 			set(TileType.Empty, x, y);
 		}
@@ -292,35 +374,62 @@ public class StatefulLevel extends Level {
 	
 	protected void addTrap(final int x, final int y) {
 		set(TileType.Wall, x, y);
-		final Point point = new Point(x, y);
-		overlaps.computeIfAbsent(point, p -> new AtomicInteger()).incrementAndGet();
+		overlaps.computeIfAbsent(Integer.valueOf(cell(x, y)), p -> new AtomicInteger()).incrementAndGet();
+	}
+
+	private StatefulLevel continueTrap(final StatefulLevel afterTrap, final Position position, final Direction vector, final IntConsumer trace) {
+		final StatefulLevel more = afterTrap.move(position, vector, trace);
+		// the trap fired even if the player comes to an end behind it, unless the field is left
+		return more != null || position.get() == NONE ? more : afterTrap;
+	}
+
+	private static StatefulLevel leave(final Position position) {
+		position.set(NONE);
+		return null;
 	}
 
-	private StatefulLevel continueTrap(final StatefulLevel afterTrap, final Point position, final Point vector) {
-		final StatefulLevel more = afterTrap.move(position, Direction.from(vector));
-		return more != null ? more : afterTrap;
+	private static StatefulLevel stop(final StatefulLevel next, final int origin, final Position position, final int x, final int y) {
+		position.set(cell(x, y));
+		return origin == position.get() ? null : next;
 	}
 
-	private StatefulLevel stop(final StatefulLevel next, final Point origin, final Point position, final Point delta) {
-		position.translate(-delta.x, -delta.y);
-		return origin.equals(position) ? null : next;
+	/**
+	 * Returns the direction a slide entering the given tile leaves it with;
+	 * only deflectors change the direction.
+	 * @param tile the tile entered, must not be {@code null}
+	 * @param vector the direction entering the tile, must not be {@code null}
+	 * @return the direction leaving the tile, {@code null} if a deflector blocks the slide
+	 */
+	static Direction deflect(final TileType tile, final Direction vector) {
+		switch (tile) {
+		case DeflectorTL:
+			return vector == Direction.Left ? Direction.Down : vector == Direction.Up ? Direction.Right : null;
+		case DeflectorTR:
+			return vector == Direction.Right ? Direction.Down : vector == Direction.Up ? Direction.Left : null;
+		case DeflectorBR:
+			return vector == Direction.Right ? Direction.Up : vector == Direction.Down ? Direction.Left : null;
+		case DeflectorBL:
+			return vector == Direction.Left ? Direction.Up : vector == Direction.Down ? Direction.Right : null;
+		default:
+			return vector;
+		}
 	}
 	
-	private void initSensor(final Point position) {
+	private void initSensor(final int x, final int y) {
 		final Set<Direction> result = new HashSet<>(Direction.asList());
-		if (position.x == 0 || !TileType.Empty.equals(at(position.x - 1, position.y))) {
+		if (x == 0 || !TileType.Empty.equals(at(x - 1, y))) {
 			result.remove(Direction.Right);
 		}
-		if (position.x == Level.WIDTH - 1 || !TileType.Empty.equals(at(position.x + 1, position.y))) {
+		if (x == Level.WIDTH - 1 || !TileType.Empty.equals(at(x + 1, y))) {
 			result.remove(Direction.Left);
 		}
-		if (position.y == 0 || !TileType.Empty.equals(at(position.x, position.y - 1))) {
+		if (y == 0 || !TileType.Empty.equals(at(x, y - 1))) {
 			result.remove(Direction.Down);
 		}
-		if (position.y == Level.HEIGHT - 1 || !TileType.Empty.equals(at(position.x, position.y + 1))) {
+		if (y == Level.HEIGHT - 1 || !TileType.Empty.equals(at(x, y + 1))) {
 			result.remove(Direction.Up);
 		}
-		sensors.put(position, result);
+		sensors.put(Integer.valueOf(cell(x, y)), result);
 	}
 
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package de.engehausen.boxitus;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Path2D;
 import java.util.HashMap;
 import java.util.Map;
@@ -163,7 +164,55 @@ public class TileRenderers {
 	 * @return a renderer, never {@code null}.
 	 */
 	public Consumer<Graphics2D> renderer(final TileType type) {
-		return tileRenderers.computeIfAbsent(type, k -> EMPTY);
+		// no computeIfAbsent() here, the renderers are also used off the event dispatch thread
+		return tileRenderers.getOrDefault(type, EMPTY);
+	}
+
+	/**
+	 * Renders the given level. Each tile is 32x32 pixels in size, traps are rendered
+	 * last as they paint beyond their own tile.
+	 * @param g2d the graphics to render to, must not be {@code null}
+	 * @param level the level to render, must not be {@code null}
+	 */
+	public void render(final Graphics2D g2d, final Level level) {
+		render(g2d, level, 0, 0, Level.WIDTH, Level.HEIGHT);
+	}
+
+	/**
+	 * Renders a rectangular part of the given level.
+	 * @param g2d the graphics to render to, must not be {@code null}
+	 * @param level the level to render, must not be {@code null}
+	 * @param minX the left tile coordinate (inclusive)
+	 * @param minY the top tile coordinate (inclusive)
+	 * @param maxX the right tile coordinate (exclusive)
+	 * @param maxY the bottom tile coordinate (exclusive)
+	 */
+	public void render(final Graphics2D g2d, final Level level, final int minX, final int minY, final int maxX, final int maxY) {
+		final int x0 = Math.max(0, minX);
+		final int y0 = Math.max(0, minY);
+		final int x1 = Math.min(Level.WIDTH, maxX);
+		final int y1 = Math.min(Level.HEIGHT, maxY);
+		final AffineTransform original = g2d.getTransform();
+		for (int y = y0; y < y1; y++) {
+			for (int x = x0; x < x1; x++) {
+				final TileType type = level.at(x, y);
+				if (!TileType.TrapLR.equals(type) && !TileType.TrapTB.equals(type)) {
+					g2d.translate(32 * x, 32 * y);
+					renderer(type).accept(g2d);
+					g2d.setTransform(original);
+				}
+			}
+		}
+		for (int y = y0; y < y1; y++) {
+			for (int x = x0; x < x1; x++) {
+				final TileType type = level.at(x, y);
+				if (TileType.TrapLR.equals(type) || TileType.TrapTB.equals(type)) {
+					g2d.translate(32 * x, 32 * y);
+					renderer(type).accept(g2d);
+					g2d.setTransform(original);
+				}
+			}
+		}
 	}
 
 }
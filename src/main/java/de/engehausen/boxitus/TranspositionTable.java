@@ -0,0 +1,155 @@
+package de.engehausen.boxitus;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size, lossy table of the search nodes visited in an iteration of a
+ * search. Entries are kept in primitive arrays of buckets; when a bucket is full
+ * entries of older iterations are replaced first, then the entries visited at
+ * the greatest depth, as their subtrees are the cheapest to explore again.
+ * <p>
+ * Nodes are identified by the fingerprint of the level state (see
+ * {@link StatefulLevel#fingerprint()}) and the cell of the player. Both are
+ * stored and compared, so nodes differing in the cell are never mistaken for
+ * each other; only distinct level states with equal 64-bit fingerprints are.
+ */
+public class TranspositionTable {
+
+	/** the system property giving the default size of the table in megabytes */
+	public static final String SIZE_PROPERTY = "boxitus.tableSize";
+
+	private static final long DEFAULT_SIZE = 16L << 20;
+	private static final int ENTRY_BYTES = 2 * Long.BYTES + Integer.BYTES;
+	private static final int BUCKET = 4;
+	private static final long EMPTY = 0;
+
+	private long[] keys;
+	private int[] cells;
+	private long[] values;
+	private int mask;
+	private int generation;
+	private int used;
+
+	/**
+	 * Creates the table.
+	 * @param bytes the memory to use for the table, rounded down to a power of two;
+	 * at least one bucket is always allocated
+	 */
+	public TranspositionTable(final long bytes) {
+		resize(bytes);
+	}
+
+	/**
+	 * Returns the default size of tables, taken from the {@value #SIZE_PROPERTY}
+	 * system property or 16 megabytes.
+	 * @return the default size in bytes
+	 */
+	public static long getDefaultSize() {
+		final String size = System.getProperty(SIZE_PROPERTY);
+		return size == null ? DEFAULT_SIZE : Long.parseLong(size) << 20;
+	}
+
+	/**
+	 * Changes the size of the table, dropping all entries.
+	 * @param bytes the memory to use for the table, rounded down to a power of two
+	 */
+	public void resize(final long bytes) {
+		final long buckets = Math.max(1, Long.highestOneBit(Math.min(Integer.MAX_VALUE / BUCKET, bytes / (ENTRY_BYTES * BUCKET))));
+		// release the old arrays before allocating the new ones
+		keys = null;
+		cells = null;
+		values = null;
+		keys = new long[(int) buckets * BUCKET];
+		cells = new int[keys.length];
+		values = new long[keys.length];
+		mask = (int) buckets - 1;
+		used = 0;
+	}
+
+	/**
+	 * Returns the memory used by the table.
+	 * @return the size of the table in bytes
+	 */
+	public long getSize() {
+		return (long) keys.length * ENTRY_BYTES;
+	}
+
+	/**
+	 * Starts a new iteration of the search. Entries of earlier iterations
+	 * are no longer reported as visited.
+	 */
+	public void nextGeneration() {
+		generation++;
+	}
+
+	/**
+	 * Drops all entries.
+	 */
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		Arrays.fill(cells, 0);
+		Arrays.fill(values, 0);
+		used = 0;
+	}
+
+	/**
+	 * Returns the number of occupied entries.
+	 * @return the number of entries, at most the capacity of the table
+	 */
+	public int getUsed() {
+		return used;
+	}
+
+	/**
+	 * Records a visit of the given node.
+	 * @param fingerprint the fingerprint of the level state, any value
+	 * @param cell the cell of the player
+	 * @param depth the depth the node is visited at, must not be negative
+	 * @return {@code true} if the node was already visited in the current iteration
+	 * at the same or a smaller depth and need not be explored again
+	 */
+	public boolean visit(final long fingerprint, final int cell, final int depth) {
+		final long stored = fingerprint == EMPTY ? 1 : fingerprint;
+		final int bucket = BUCKET * (int) (mix(31 * stored + cell) & mask);
+		int victim = bucket;
+		long victimScore = Long.MAX_VALUE;
+		for (int i = bucket; i < bucket + BUCKET; i++) {
+			if (keys[i] == stored && cells[i] == cell) {
+				if ((int) (values[i] >>> 32) == generation && (int) values[i] <= depth) {
+					return true;
+				}
+				values[i] = pack(depth);
+				return false;
+			}
+			// empty slots first, then old generations, then the deepest entries
+			final long score = keys[i] == EMPTY ? Long.MIN_VALUE : (int) (values[i] >>> 32) != generation ? -(int) values[i] - 1L : Integer.MAX_VALUE - (int) values[i];
+			if (score < victimScore) {
+				victimScore = score;
+				victim = i;
+			}
+		}
+		if (keys[victim] == EMPTY) {
+			used++;
+		}
+		keys[victim] = stored;
+		cells[victim] = cell;
+		values[victim] = pack(depth);
+		return false;
+	}
+
+	private long pack(final int depth) {
+		return ((long) generation << 32) | depth;
+	}
+
+	private static long mix(final long key) {
+		// finalizer of MurmurHash3, the keys may not be well distributed in their low bits
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb93fe51a87ebL;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
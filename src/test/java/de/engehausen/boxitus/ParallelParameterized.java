@@ -0,0 +1,57 @@
+package de.engehausen.boxitus;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.runners.Parameterized;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * A parameterized runner which runs the parameter sets concurrently.
+ * The tests of one parameter set still run one after another. The number of
+ * threads is set with the {@link #THREADS_PROPERTY} system property and defaults
+ * to the number of cores.
+ */
+public class ParallelParameterized extends Parameterized {
+
+	/** the system property with the number of parameter sets to run concurrently */
+	public static final String THREADS_PROPERTY = "boxitus.testThreads";
+
+	/**
+	 * Creates the runner.
+	 * @param klass the test class, must not be {@code null}
+	 * @throws Throwable if the test class is malformed
+	 */
+	public ParallelParameterized(final Class<?> klass) throws Throwable {
+		super(klass);
+		setScheduler(new Scheduler(Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors())));
+	}
+
+	private static class Scheduler implements RunnerScheduler {
+
+		private final ExecutorService executor;
+
+		public Scheduler(final int threads) {
+			executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		}
+
+		@Override
+		public void schedule(final Runnable childStatement) {
+			executor.execute(childStatement);
+		}
+
+		@Override
+		public void finished() {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+}
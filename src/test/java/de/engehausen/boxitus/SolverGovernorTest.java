@@ -0,0 +1,91 @@
+package de.engehausen.boxitus;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import de.engehausen.boxitus.Solver.Move.Direction;
+
+/**
+ * A unit test of the heap governance of the solver. The levels are solved
+ * one after the other, a short heap is reported to the solver running.
+ */
+public class SolverGovernorTest {
+
+	@Test
+	public void checkFallback() throws IOException {
+		final Map<String, List<Direction>> expected = Levels
+			.getObjectMapper()
+			.readValue(
+				SolverGovernorTest.class.getResourceAsStream("/solutions.json"), new TypeReference<Map<String, List<Direction>>>() {}
+			);
+		final Levels levels = Levels.load(SolverGovernorTest.class.getResourceAsStream("/levels.json"));
+		for (int i = 0; i < levels.getSize(); i++) {
+			final String code = levels.getCode(i);
+			final List<Direction> solution = expected.get(code);
+			if (solution == null) {
+				continue;
+			}
+			final SolveResult result = new Solver(levels.getElementAt(i), Solver.Engine.DEPTH_FIRST).solve(new SolveBudget(0, 0, 0, shortHeap()));
+			Assert.assertEquals(code + ": the solver must fall back", Solver.Engine.ITERATIVE_DEEPENING, result.getEngine());
+			Assert.assertNull(code + ": solving was aborted", result.getAbortReason());
+			if (solution.isEmpty()) {
+				Assert.assertTrue(code + ": unexpected solution " + result.getSolutions(), result.getSolutions().isEmpty());
+				Assert.assertTrue(code + ": must be proven unsolvable", result.isProvenUnsolvable());
+			} else {
+				Assert.assertEquals(code + ": expected exactly one solution", 1, result.getSolutions().size());
+				Assert.assertEquals(code + ": the solution found is not a shortest one", solution.size(), result.getSolutions().get(0).size());
+				Assert.assertTrue(code + ": must be proven optimal", result.isProvenOptimal());
+			}
+		}
+	}
+
+	@Test
+	public void checkThresholdsRestored() {
+		final Map<String, Long> before = thresholds();
+		try (final SolverGovernor first = new SolverGovernor(() -> 0)) {
+			try (final SolverGovernor second = new SolverGovernor(() -> 1)) {
+				SolverGovernor.report(false);
+				Assert.assertEquals("the smaller solver must not be warned", 0, first.getWarnings());
+				Assert.assertEquals("the larger solver must be warned", 1, second.getWarnings());
+			}
+			Assert.assertNotEquals("the thresholds must be kept while a governor is open", before, thresholds());
+		}
+		Assert.assertEquals("the thresholds must be restored", before, thresholds());
+	}
+
+	/**
+	 * Returns a control predicate reporting a short heap when the solver starts.
+	 * @return the control predicate, never {@code null}
+	 */
+	private static Predicate<Void> shortHeap() {
+		final AtomicBoolean reported = new AtomicBoolean();
+		return ignore -> {
+			if (!reported.getAndSet(true)) {
+				SolverGovernor.report(false);
+			}
+			return true;
+		};
+	}
+
+	private static Map<String, Long> thresholds() {
+		final Map<String, Long> result = new HashMap<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.isCollectionUsageThresholdSupported()) {
+				result.put(pool.getName(), Long.valueOf(pool.getCollectionUsageThreshold()));
+			}
+		}
+		return result;
+	}
+
+}
@@ -2,15 +2,25 @@ package de.engehausen.boxitus;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import org.junit.AfterClass;
 import org.junit.Assert;
-import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.Timeout;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized.Parameters;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 
@@ -19,53 +29,220 @@ import de.engehausen.boxitus.Solver.Move.Direction;
 
 /**
  * A unit test to verify that the solver solves the known levels as expected.
+ * Each level is a test of its own; the levels are checked concurrently
+ * (see {@link ParallelParameterized}), each test with a timeout of
+ * {@link #TIMEOUT_PROPERTY} seconds. The solvers do not watch the heap
+ * (see {@link Solver#setGoverned(boolean)}).
+ * <p>
+ * The search effort of every engine is compared with the baseline in {@code effort.json}
+ * and must not exceed it by more than {@link #TOLERANCE_PROPERTY} (default 10%).
+ * The effort is counted, not timed, so the comparison is deterministic. With
+ * {@link #RECORD_PROPERTY} set, regressions do not fail. The effort measured is
+ * written to {@code target/effort-new.json} whenever it differs from the baseline.
  */
+@RunWith(ParallelParameterized.class)
 public class SolverTest {
 
+	/** the system property with the timeout of a single test in seconds */
+	public static final String TIMEOUT_PROPERTY = "boxitus.levelTimeout";
+	/** the system property with the share by which the search effort may exceed the baseline */
+	public static final String TOLERANCE_PROPERTY = "boxitus.effortTolerance";
+	/** the system property to set for recording a new search effort baseline */
+	public static final String RECORD_PROPERTY = "boxitus.recordEffort";
+
+	private static final double TOLERANCE = Double.parseDouble(System.getProperty(TOLERANCE_PROPERTY, "0.1"));
+	private static final boolean RECORD = Boolean.getBoolean(RECORD_PROPERTY);
+
 	private static Map<String, List<Direction>> EXPECTED;
+	private static Map<String, Map<String, Effort>> BASELINE;
+	private static final Map<String, List<Direction>> DISCOVERED = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, Map<String, Effort>> MEASURED = new ConcurrentHashMap<>();
+
+	@Rule
+	public Timeout timeout = new Timeout(Long.getLong(TIMEOUT_PROPERTY, 120), TimeUnit.SECONDS);
+
+	private final String code;
+	private final Level level;
+	private final List<Direction> expected;
+
+	public SolverTest(final String levelCode, final Level aLevel, final List<Direction> expectedSolution) {
+		code = levelCode;
+		level = aLevel;
+		expected = expectedSolution;
+	}
 
-	@BeforeClass
-	public static void init() throws IOException {
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> levels() throws IOException {
 		EXPECTED = Levels
 			.getObjectMapper()
 			.readValue(
 				SolverTest.class.getResourceAsStream("/solutions.json"), new TypeReference<Map<String, List<Direction>>>() {}
 			);
-	}
-
-	@Test
-	public void checkAllSolutions() throws IOException {
-		final Map<String, List<Direction>> allSolutions = new TreeMap<>((a, b) -> a.compareTo(b) );
-		allSolutions.putAll(EXPECTED);
+		BASELINE = Levels
+			.getObjectMapper()
+			.readValue(
+				SolverTest.class.getResourceAsStream("/effort.json"), new TypeReference<Map<String, Map<String, Effort>>>() {}
+			);
+		// levels are created here, creating them is not thread-safe
 		final Levels levels = Levels.load(SolverTest.class.getResourceAsStream("/levels.json"));
+		final List<Object[]> result = new ArrayList<>(levels.getSize());
 		for (int i = levels.getSize(); --i >= 0; ) {
-			final Level level = levels.getElementAt(i);
 			final String code = levels.getCode(i);
-			final Solver solver = new Solver(level);
-			final List<List<Direction>> actualSolutions = transform(solver.solve( ignore -> true ));
-			final List<Direction> expected = EXPECTED.get(code);
-			if (expected != null) {
-				// expected solution size must be okay in ordered results
-				if (!actualSolutions.isEmpty() && actualSolutions.get(0).size() > expected.size()) {
-					Assert.fail(code + ": the solution found is longer than expected - got " + actualSolutions.get(0) + " but expected " + expected);
-				}
-				if (!expected.isEmpty()) {
-					Assert.assertTrue(code + ": could not find solution = " + expected, actualSolutions.contains(expected));
-				}
-			} else {
-				allSolutions.put(code, actualSolutions.isEmpty() ? Collections.emptyList() : actualSolutions.get(0));
-			}
+			result.add(new Object[] { code, levels.getElementAt(i), EXPECTED.get(code) });
 		}
-		if (EXPECTED.size() != allSolutions.size()) {
-			final File out = new File("target/solutions-new.json");
+		return result;
+	}
+
+	@AfterClass
+	public static void recordSolutions() throws IOException {
+		if (!DISCOVERED.isEmpty()) {
+			final Map<String, List<Direction>> allSolutions = new TreeMap<>((a, b) -> a.compareTo(b) );
+			allSolutions.putAll(EXPECTED);
+			allSolutions.putAll(DISCOVERED);
 			Levels
 				.getObjectMapper()
 				.writerWithDefaultPrettyPrinter()
-				.writeValue(out, allSolutions);
-			Assert.fail("new solutions were recorded in " + out.getAbsolutePath() + ", please update solutions.json");
+				.writeValue(new File("target/solutions-new.json"), allSolutions);
+		}
+		// efforts not measured in this run, e.g. of levels not tested, are kept
+		final Map<String, Map<String, Effort>> allEfforts = new TreeMap<>();
+		BASELINE.forEach((code, efforts) -> allEfforts.put(code, new TreeMap<>(efforts)));
+		MEASURED.forEach((code, efforts) -> allEfforts.computeIfAbsent(code, k -> new TreeMap<>()).putAll(efforts));
+		if (!BASELINE.equals(allEfforts)) {
+			final File out = new File("target/effort-new.json");
+			Levels
+				.getObjectMapper()
+				.writerWithDefaultPrettyPrinter()
+				.writeValue(out, allEfforts);
+			System.err.println("search effort changed, recorded in " + out.getAbsolutePath());
+		}
+	}
+
+	@Test
+	public void checkAllSolutions() {
+		final SolveResult result = solver(Solver.Engine.DEPTH_FIRST).solve(new SolveBudget(0, 0, 0, running()));
+		Assert.assertNull(code + ": solving was aborted", result.getAbortReason());
+		Assert.assertEquals(code + ": the engine must not fall back", Solver.Engine.DEPTH_FIRST, result.getEngine());
+		final List<List<Direction>> actualSolutions = transform(result.getSolutions());
+		checkEffort(result);
+		if (expected != null) {
+			// expected solution size must be okay in ordered results
+			if (!actualSolutions.isEmpty() && actualSolutions.get(0).size() > expected.size()) {
+				Assert.fail(code + ": the solution found is longer than expected - got " + actualSolutions.get(0) + " but expected " + expected);
+			}
+			if (!expected.isEmpty()) {
+				Assert.assertTrue(code + ": could not find solution = " + expected, actualSolutions.contains(expected));
+			}
+		} else {
+			DISCOVERED.put(code, actualSolutions.isEmpty() ? Collections.emptyList() : actualSolutions.get(0));
+			Assert.fail(code + ": new solution recorded in " + new File("target/solutions-new.json").getAbsolutePath() + ", please update solutions.json");
+		}
+	}
+
+	@Test
+	public void checkShortestSolutions() {
+		if (expected == null) {
+			return;
+		}
+		for (Solver.Engine engine : new Solver.Engine[] { Solver.Engine.HIERARCHICAL, Solver.Engine.ITERATIVE_DEEPENING }) {
+			final SolveResult result = solver(engine).solve(new SolveBudget(0, 0, 0, running()));
+			checkEffort(result);
+			final List<List<Direction>> actualSolutions = transform(result.getSolutions());
+			if (expected.isEmpty()) {
+				Assert.assertTrue(code + ": unexpected solution " + actualSolutions, actualSolutions.isEmpty());
+			} else {
+				Assert.assertEquals(code + ": expected exactly one solution", 1, actualSolutions.size());
+				Assert.assertTrue(code + ": the solution found is longer than expected - got " + actualSolutions.get(0) + " but expected " + expected, actualSolutions.get(0).size() <= expected.size());
+			}
 		}
 	}
 
+	@Test
+	public void checkBidirectionalSearch() {
+		if (!BidirectionalSearch.isStatic(level)) {
+			return;
+		}
+		final List<Direction> bidirectional = new BidirectionalSearch(level).search(running());
+		final List<Direction> deepening = new IterativeDeepeningSearch(level, new SlideAnalysis(level), new TranspositionTable(1L << 20)).search(running());
+		if (deepening == null) {
+			Assert.assertNull(code + ": unexpected solution " + bidirectional, bidirectional);
+		} else {
+			Assert.assertNotNull(code + ": no solution found, expected one of length " + deepening.size(), bidirectional);
+			Assert.assertEquals(code + ": the solution found is not a shortest one - got " + bidirectional + " but expected " + deepening, deepening.size(), bidirectional.size());
+			Assert.assertNotNull(code + ": not a solution " + bidirectional, new Solver(level, Solver.Engine.ITERATIVE_DEEPENING).replay(bidirectional));
+		}
+	}
+
+	@Test
+	public void checkReplay() {
+		if (expected == null || expected.isEmpty()) {
+			return;
+		}
+		final ReplayResult result = new GameSimulation(level).replay(expected);
+		Assert.assertEquals(code + ": the game does not play out as the solver expects - " + result, -1, result.getDivergence());
+		Assert.assertTrue(code + ": the solution does not solve the game - " + result, result.isSolved());
+	}
+
+	@Test
+	public void checkSolutionStream() {
+		final Solver solver = solver(Solver.Engine.HIERARCHICAL);
+		final List<List<Direction>> shortest = transform(solver.solve(running()));
+		final List<List<Direction>> streamed = solver
+			.solutions(running())
+			.limit(5)
+			.collect(Collectors.toList());
+		Assert.assertEquals(code + ": solutions must be found by both", shortest.isEmpty(), streamed.isEmpty());
+		for (int j = 0; j < streamed.size(); j++) {
+			Assert.assertNotNull(code + ": not a solution " + streamed.get(j), solver.replay(streamed.get(j)));
+			if (j == 0) {
+				Assert.assertEquals(code + ": first solution must be a shortest one", shortest.get(0).size(), streamed.get(j).size());
+			} else {
+				Assert.assertTrue(code + ": solutions must not get shorter", streamed.get(j - 1).size() <= streamed.get(j).size());
+				Assert.assertFalse(code + ": duplicate solution " + streamed.get(j), streamed.subList(0, j).contains(streamed.get(j)));
+			}
+		}
+	}
+
+	private void checkEffort(final SolveResult result) {
+		final String engine = result.getEngine().name();
+		final Effort actual = new Effort(result.getMetrics());
+		MEASURED.computeIfAbsent(code, k -> new ConcurrentHashMap<>()).put(engine, actual);
+		final Effort baseline = BASELINE.getOrDefault(code, Collections.emptyMap()).get(engine);
+		if (baseline != null && !RECORD) {
+			checkEffort(engine + " expansions", baseline.expansions, actual.expansions);
+			checkEffort(engine + " peak visited", baseline.peakVisited, actual.peakVisited);
+			checkEffort(engine + " level copies", baseline.copies, actual.copies);
+		}
+	}
+
+	private void checkEffort(final String what, final long baseline, final long actual) {
+		if (actual > baseline * (1 + TOLERANCE)) {
+			Assert.fail(code + ": " + what + " regressed from " + baseline + " to " + actual + ", if intended update effort.json from target/effort-new.json (run with -D" + RECORD_PROPERTY + "=true to record it without failing)");
+		}
+	}
+
+	/**
+	 * Creates a solver for the level of the test. It does not watch the heap: the
+	 * levels are solved concurrently, so the heap used by one level would make the
+	 * solver of another one fall back and the results depend on the scheduling.
+	 * The governor is tested by {@link SolverGovernorTest}.
+	 * @param engine the engine to solve with, must not be {@code null}
+	 * @return the solver, never {@code null}
+	 */
+	private Solver solver(final Solver.Engine engine) {
+		final Solver solver = new Solver(level, engine);
+		solver.setGoverned(false);
+		return solver;
+	}
+
+	/**
+	 * Returns a control predicate which stops the solver when the test times out.
+	 * @return the control predicate, never {@code null}
+	 */
+	private static Predicate<Void> running() {
+		return ignore -> !Thread.currentThread().isInterrupted();
+	}
+
 	private List<List<Direction>> transform(final List<List<Move>> list) {
 		return list
 			.stream()
@@ -77,4 +254,42 @@ public class SolverTest {
 			.collect(Collectors.toList());
 	}
 
+	/**
+	 * The search effort of a solver run.
+	 */
+	public static class Effort {
+
+		public long expansions;
+		public long peakVisited;
+		public long copies;
+
+		public Effort() {
+			// for deserialization
+		}
+
+		public Effort(final SolverMetrics.Snapshot metrics) {
+			expansions = metrics.getExpansions();
+			peakVisited = metrics.getPeakVisited();
+			copies = metrics.getCopies();
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(31 * (31 * expansions + peakVisited) + copies);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			final Effort other = (Effort) obj;
+			return expansions == other.expansions && peakVisited == other.peakVisited && copies == other.copies;
+		}
+
+	}
+
 }
\ No newline at end of file